@@ -0,0 +1,116 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+
+import at.huber.youtubeExtractor.YtFile;
+
+/**
+ * Picks the video stream of an adaptive player from the bandwidth estimate, with the requested
+ * quality as a cap.
+ *
+ * <p>The DASH video-only streams carry segment indexes, but the extractor exposes only their URLs
+ * and not the index and init ranges a DASH manifest needs, so they are played as progressive
+ * sources and ExoPlayer cannot switch between them inside one source. Instead this selects a rung
+ * of the {@link ItagLadder} and the player swaps its media source at the current position, which
+ * drops the buffer. So the player only switches up in place, with a healthy buffer and a minimum
+ * time since the last switch, and never while it waits for data. A lower rung is only taken when
+ * the player is prepared again anyway, e.g. after its URLs were refreshed.
+ */
+final class AdaptiveQuality {
+
+    static final long CHECK_INTERVAL_MS = 2000;
+
+    private static final float BANDWIDTH_FRACTION = 0.75f;
+
+    private static final long MIN_BUFFER_FOR_UP_SWITCH_MS = 10000;
+
+    private static final long MIN_SWITCH_INTERVAL_MS = 10000;
+
+    private final SparseArray<YtFile> ytFiles;
+
+    private final String maxQuality;
+
+    private final BandwidthMeter bandwidthMeter;
+
+    private YtFile current;
+
+    private long lastSwitchMs;
+
+    AdaptiveQuality(SparseArray<YtFile> ytFiles, String maxQuality, BandwidthMeter bandwidthMeter) {
+        this.ytFiles = ytFiles;
+        this.maxQuality = maxQuality;
+        this.bandwidthMeter = bandwidthMeter;
+    }
+
+    /** Returns the stream to start with, or null when no known video itag was extracted. */
+    YtFile selectInitial() {
+        current = resolveTarget();
+        lastSwitchMs = SystemClock.elapsedRealtime();
+        return current;
+    }
+
+    /**
+     * Returns a higher stream to switch to in place, or null to keep the current one. {@code
+     * bufferedDurationMs} is the media buffered ahead of the playback position, and {@code
+     * buffering} whether the player is waiting for data.
+     */
+    YtFile evaluate(long bufferedDurationMs, boolean buffering) {
+        YtFile target = resolveTarget();
+        if (target == null || current == null
+                || ItagLadder.heightOf(target) <= ItagLadder.heightOf(current)) {
+            return null;
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        if (buffering
+                || bufferedDurationMs < MIN_BUFFER_FOR_UP_SWITCH_MS
+                || nowMs - lastSwitchMs < MIN_SWITCH_INTERVAL_MS) {
+            return null;
+        }
+        current = target;
+        lastSwitchMs = nowMs;
+        return target;
+    }
+
+    /**
+     * Returns the stream to use when the player is prepared again anyway, which may be lower than
+     * the current one, or the current stream when no known video itag fits.
+     */
+    YtFile selectForPrepare() {
+        YtFile target = resolveTarget();
+        if (target != null && (current == null || !sameItag(target, current))) {
+            current = target;
+            lastSwitchMs = SystemClock.elapsedRealtime();
+        }
+        return current;
+    }
+
+    /** Continues from {@code video}, e.g. the stream a preloaded player was prepared with. */
+    void startAt(YtFile video) {
+        current = video;
+        lastSwitchMs = SystemClock.elapsedRealtime();
+    }
+
+    YtFile getCurrent() {
+        return current;
+    }
+
+    private YtFile resolveTarget() {
+        return ItagLadder.resolveVideo(ytFiles, maxQuality, allowedBitrate(bandwidthMeter));
+    }
+
+    /** Returns the share of the bandwidth estimate a stream may use, in bits per second. */
+    static long allowedBitrate(BandwidthMeter bandwidthMeter) {
+        return (long) (bandwidthMeter.getBitrateEstimate() * BANDWIDTH_FRACTION);
+    }
+
+    private static boolean sameItag(YtFile a, YtFile b) {
+        return a.getFormat().getItag() == b.getFormat().getItag();
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persists the shared bandwidth estimate per network type, so the next session starts from the
+ * last measured bandwidth instead of ExoPlayer's default guess.
+ *
+ * <p>The estimate is saved at most every {@link #SAVE_INTERVAL_MS} while transfers report samples.
+ * Once the network type differs from the one the estimate was loaded for, saving stops for the
+ * session, as the meter cannot be reset and its estimate then mixes both networks.
+ */
+final class BandwidthStore {
+
+    static final String NETWORK_WIFI = "wifi";
+
+    static final String NETWORK_CELLULAR = "cellular";
+
+    static final String NETWORK_OTHER = "other";
+
+    private static final String PREFERENCES_NAME = "np.com.sarbagyastha.youtubeplayer.bandwidth";
+
+    private static final long SAVE_INTERVAL_MS = 30 * 1000;
+
+    private final Context context;
+
+    private final SharedPreferences preferences;
+
+    /** The network type the estimate was loaded for, or null before {@link #load}. */
+    private String loadedNetworkType;
+
+    private boolean networkChanged;
+
+    private long lastSaveMs = -SAVE_INTERVAL_MS;
+
+    private long saves;
+
+    BandwidthStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.preferences = this.context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Returns the saved estimate in bits per second for the current network, or 0 if none. */
+    long load() {
+        loadedNetworkType = getNetworkType();
+        return preferences.getLong(loadedNetworkType, 0);
+    }
+
+    /** Saves {@code bitrateEstimate} for the current network unless it was saved recently. */
+    void maybeSave(long bitrateEstimate) {
+        long nowMs = SystemClock.elapsedRealtime();
+        if (nowMs - lastSaveMs < SAVE_INTERVAL_MS) {
+            return;
+        }
+        save(bitrateEstimate);
+    }
+
+    void save(long bitrateEstimate) {
+        if (bitrateEstimate <= 0 || networkChanged) {
+            return;
+        }
+        String networkType = getNetworkType();
+        if (loadedNetworkType != null && !loadedNetworkType.equals(networkType)) {
+            networkChanged = true;
+            return;
+        }
+        lastSaveMs = SystemClock.elapsedRealtime();
+        saves++;
+        preferences.edit().putLong(networkType, bitrateEstimate).apply();
+    }
+
+    /** Returns {@link #NETWORK_WIFI}, {@link #NETWORK_CELLULAR} or {@link #NETWORK_OTHER}. */
+    String getNetworkType() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo;
+        try {
+            networkInfo = connectivityManager != null ? connectivityManager.getActiveNetworkInfo() : null;
+        } catch (SecurityException e) {
+            // ACCESS_NETWORK_STATE was removed from the merged manifest.
+            networkInfo = null;
+        }
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return NETWORK_OTHER;
+        }
+        switch (networkInfo.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+            case ConnectivityManager.TYPE_ETHERNET:
+                return NETWORK_WIFI;
+            case ConnectivityManager.TYPE_MOBILE:
+            case ConnectivityManager.TYPE_WIMAX:
+                return NETWORK_CELLULAR;
+            default:
+                return NETWORK_OTHER;
+        }
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("networkType", getNetworkType());
+        stats.put(NETWORK_WIFI, preferences.getLong(NETWORK_WIFI, 0));
+        stats.put(NETWORK_CELLULAR, preferences.getLong(NETWORK_CELLULAR, 0));
+        stats.put(NETWORK_OTHER, preferences.getLong(NETWORK_OTHER, 0));
+        stats.put("saves", saves);
+        stats.put("networkChanged", networkChanged);
+        return stats;
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Collects the results of the commands of one {@code batch} call and replies once all of them
+ * completed, in command order.
+ *
+ * <p>Each command result is a map with either a {@code result} or an {@code error} and {@code
+ * message}, so one failing command does not fail the batch.
+ */
+final class BatchCall {
+
+    private final Result reply;
+
+    private final Object[] results;
+
+    private int remaining;
+
+    BatchCall(int size, Result reply) {
+        this.reply = reply;
+        this.results = new Object[size];
+        this.remaining = size;
+        if (size == 0) {
+            reply.success(Arrays.asList(results));
+        }
+    }
+
+    /** Returns the result to pass to the command at {@code index}. */
+    Result resultFor(int index) {
+        return new Result() {
+            @Override
+            public void success(Object result) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("result", result);
+                complete(index, entry);
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("error", errorCode);
+                entry.put("message", errorMessage);
+                complete(index, entry);
+            }
+
+            @Override
+            public void notImplemented() {
+                error("notImplemented", "Unknown batch command", null);
+            }
+        };
+    }
+
+    private void complete(int index, Object entry) {
+        if (results[index] != null) {
+            return;
+        }
+        results[index] = entry;
+        if (--remaining == 0) {
+            reply.success(Arrays.asList(results));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+
+import java.util.Map;
+
+/**
+ * Buffering policy of a player, trading startup latency against memory and rebuffer risk.
+ *
+ * <p>Profiles start from a named preset ("default", "lowLatency", "lowMemory" or "smooth") and
+ * may override any of its values.
+ */
+final class BufferProfile {
+
+    static final BufferProfile DEFAULT = new BufferProfile(
+            DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+            C.LENGTH_UNSET,
+            true);
+
+    /** Starts as soon as possible and keeps a short buffer, for feeds on phones. */
+    static final BufferProfile LOW_LATENCY = new BufferProfile(5000, 15000, 500, 1500, C.LENGTH_UNSET, true);
+
+    /** Keeps a small buffer bounded in bytes, for low-end devices. */
+    static final BufferProfile LOW_MEMORY = new BufferProfile(5000, 10000, 1500, 3000, 4 * 1024 * 1024, false);
+
+    /** Keeps a deep buffer to ride out network drops, for TVs. */
+    static final BufferProfile SMOOTH = new BufferProfile(30000, 120000, 2500, 5000, C.LENGTH_UNSET, true);
+
+    final int minBufferMs;
+
+    final int maxBufferMs;
+
+    final int bufferForPlaybackMs;
+
+    final int bufferForPlaybackAfterRebufferMs;
+
+    final int targetBufferBytes;
+
+    final boolean prioritizeTimeOverSizeThresholds;
+
+    BufferProfile(
+            int minBufferMs,
+            int maxBufferMs,
+            int bufferForPlaybackMs,
+            int bufferForPlaybackAfterRebufferMs,
+            int targetBufferBytes,
+            boolean prioritizeTimeOverSizeThresholds) {
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.targetBufferBytes = targetBufferBytes;
+        this.prioritizeTimeOverSizeThresholds = prioritizeTimeOverSizeThresholds;
+    }
+
+    /**
+     * Builds a profile from the arguments of a method call. Returns {@link #DEFAULT} for null.
+     *
+     * @throws IllegalArgumentException if the preset is unknown or the values are inconsistent.
+     */
+    static BufferProfile fromMap(Map<String, Object> arguments) {
+        if (arguments == null) {
+            return DEFAULT;
+        }
+        BufferProfile preset = preset((String) arguments.get("preset"));
+        BufferProfile profile = new BufferProfile(
+                intValue(arguments, "minBufferMs", preset.minBufferMs),
+                intValue(arguments, "maxBufferMs", preset.maxBufferMs),
+                intValue(arguments, "bufferForPlaybackMs", preset.bufferForPlaybackMs),
+                intValue(arguments, "bufferForPlaybackAfterRebufferMs", preset.bufferForPlaybackAfterRebufferMs),
+                intValue(arguments, "targetBufferBytes", preset.targetBufferBytes),
+                arguments.get("prioritizeTimeOverSizeThresholds") != null
+                        ? (Boolean) arguments.get("prioritizeTimeOverSizeThresholds")
+                        : preset.prioritizeTimeOverSizeThresholds);
+        profile.validate();
+        return profile;
+    }
+
+    private static BufferProfile preset(String name) {
+        if (name == null || name.equals("default")) {
+            return DEFAULT;
+        }
+        switch (name) {
+            case "lowLatency":
+                return LOW_LATENCY;
+            case "lowMemory":
+                return LOW_MEMORY;
+            case "smooth":
+                return SMOOTH;
+            default:
+                throw new IllegalArgumentException("Unknown buffer preset " + name);
+        }
+    }
+
+    private static int intValue(Map<String, Object> arguments, String key, int defaultValue) {
+        Object value = arguments.get(key);
+        return value != null ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private void validate() {
+        if (bufferForPlaybackMs < 0 || bufferForPlaybackAfterRebufferMs < 0) {
+            throw new IllegalArgumentException("Playback buffers must not be negative");
+        }
+        if (minBufferMs < bufferForPlaybackMs || minBufferMs < bufferForPlaybackAfterRebufferMs) {
+            throw new IllegalArgumentException("minBufferMs must cover bufferForPlaybackMs and bufferForPlaybackAfterRebufferMs");
+        }
+        if (maxBufferMs < minBufferMs) {
+            throw new IllegalArgumentException("maxBufferMs must not be less than minBufferMs");
+        }
+    }
+
+    LoadControl createLoadControl() {
+        return new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(
+                        minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs)
+                .setTargetBufferBytes(targetBufferBytes)
+                .setPrioritizeTimeOverSizeThresholds(prioritizeTimeOverSizeThresholds)
+                .createDefaultLoadControl();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BufferProfile)) {
+            return false;
+        }
+        BufferProfile other = (BufferProfile) o;
+        return minBufferMs == other.minBufferMs
+                && maxBufferMs == other.maxBufferMs
+                && bufferForPlaybackMs == other.bufferForPlaybackMs
+                && bufferForPlaybackAfterRebufferMs == other.bufferForPlaybackAfterRebufferMs
+                && targetBufferBytes == other.targetBufferBytes
+                && prioritizeTimeOverSizeThresholds == other.prioritizeTimeOverSizeThresholds;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = minBufferMs;
+        result = 31 * result + maxBufferMs;
+        result = 31 * result + bufferForPlaybackMs;
+        result = 31 * result + bufferForPlaybackAfterRebufferMs;
+        result = 31 * result + targetBufferBytes;
+        result = 31 * result + (prioritizeTimeOverSizeThresholds ? 1 : 0);
+        return result;
+    }
+}
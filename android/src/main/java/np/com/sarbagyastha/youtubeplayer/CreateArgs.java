@@ -0,0 +1,170 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The validated arguments of a {@code create} call.
+ *
+ * <p>{@link #fromMap} checks every argument once and throws {@link IllegalArgumentException} with a
+ * message naming the bad argument, which the plugin replies as an {@code InvalidArguments} error.
+ */
+final class CreateArgs {
+
+    static final String DEFAULT_QUALITY = "720p";
+
+    private static final Pattern VIDEO_ID = Pattern.compile("[A-Za-z0-9_-]{11}");
+
+    private static final Pattern QUALITY = Pattern.compile("\\d{3,4}p");
+
+    final String videoId;
+
+    /** The highest quality played, e.g. "720p". */
+    final String quality;
+
+    final boolean live;
+
+    /** Where playback starts, in milliseconds. */
+    final long startPositionMs;
+
+    final BufferProfile bufferProfile;
+
+    /** Size in bytes of the shared media disk cache, or 0 to not cache. */
+    final long maxCacheSize;
+
+    final boolean adaptive;
+
+    final long liveTargetOffsetMs;
+
+    /** Videos likely played next, preloaded once this one is created. */
+    final List<String> preloadVideoIds;
+
+    /** Plays only the audio stream, without a texture or video decoder. */
+    final boolean audioOnly;
+
+    private CreateArgs(
+            String videoId,
+            String quality,
+            boolean live,
+            long startPositionMs,
+            BufferProfile bufferProfile,
+            long maxCacheSize,
+            boolean adaptive,
+            long liveTargetOffsetMs,
+            List<String> preloadVideoIds,
+            boolean audioOnly) {
+        this.videoId = videoId;
+        this.quality = quality;
+        this.live = live;
+        this.startPositionMs = startPositionMs;
+        this.bufferProfile = bufferProfile;
+        this.maxCacheSize = maxCacheSize;
+        this.adaptive = adaptive;
+        this.liveTargetOffsetMs = liveTargetOffsetMs;
+        this.preloadVideoIds = preloadVideoIds;
+        this.audioOnly = audioOnly;
+    }
+
+    @SuppressWarnings("unchecked")
+    static CreateArgs fromMap(Map<String, Object> arguments) {
+        if (arguments == null) {
+            throw new IllegalArgumentException("Missing create arguments");
+        }
+        String videoId = stringValue(arguments, "videoId", null);
+        if (videoId == null || !VIDEO_ID.matcher(videoId).matches()) {
+            throw new IllegalArgumentException("Invalid videoId " + videoId);
+        }
+        String quality = qualityValue(arguments);
+        long startPositionMs = longValue(arguments, "startPositionMs", 0);
+        long maxCacheSize = longValue(arguments, "maxCacheSize", 0);
+        long liveTargetOffsetMs = longValue(arguments, "liveTargetOffsetMs", 0);
+        if (startPositionMs < 0 || maxCacheSize < 0 || liveTargetOffsetMs < 0) {
+            throw new IllegalArgumentException(
+                    "startPositionMs, maxCacheSize and liveTargetOffsetMs must not be negative");
+        }
+        Object bufferProfile = arguments.get("bufferProfile");
+        if (bufferProfile != null && !(bufferProfile instanceof Map)) {
+            throw new IllegalArgumentException("bufferProfile must be a map");
+        }
+        List<String> preloadVideoIds = videoIdsValue(arguments, "preloadVideoIds");
+        if (preloadVideoIds == null) {
+            preloadVideoIds = Collections.emptyList();
+        }
+        return new CreateArgs(
+                videoId,
+                quality,
+                booleanValue(arguments, "live"),
+                startPositionMs,
+                BufferProfile.fromMap((Map<String, Object>) bufferProfile),
+                maxCacheSize,
+                booleanValue(arguments, "adaptive"),
+                liveTargetOffsetMs,
+                preloadVideoIds,
+                booleanValue(arguments, "audioOnly"));
+    }
+
+    /** Returns the validated {@code quality} argument, or {@link #DEFAULT_QUALITY} if absent. */
+    static String qualityValue(Map<String, Object> arguments) {
+        String quality = stringValue(arguments, "quality", DEFAULT_QUALITY);
+        if (!QUALITY.matcher(quality).matches()) {
+            throw new IllegalArgumentException("Invalid quality " + quality);
+        }
+        return quality;
+    }
+
+    /** Returns the validated list of video IDs under {@code key}, or null if absent. */
+    static List<String> videoIdsValue(Map<String, Object> arguments, String key) {
+        Object value = arguments.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException(key + " must be a list");
+        }
+        List<String> videoIds = new ArrayList<>();
+        for (Object id : (List<?>) value) {
+            if (!(id instanceof String) || !VIDEO_ID.matcher((String) id).matches()) {
+                throw new IllegalArgumentException("Invalid preload videoId " + id);
+            }
+            videoIds.add((String) id);
+        }
+        return videoIds;
+    }
+
+    private static String stringValue(Map<String, Object> arguments, String key, String defaultValue) {
+        Object value = arguments.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(key + " must be a string");
+        }
+        return (String) value;
+    }
+
+    static long longValue(Map<String, Object> arguments, String key, long defaultValue) {
+        Object value = arguments.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+        return ((Number) value).longValue();
+    }
+
+    private static boolean booleanValue(Map<String, Object> arguments, String key) {
+        Object value = arguments.get(key);
+        if (value != null && !(value instanceof Boolean)) {
+            throw new IllegalArgumentException(key + " must be a boolean");
+        }
+        return Boolean.TRUE.equals(value);
+    }
+}
@@ -0,0 +1,162 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import at.huber.youtubeExtractor.VideoMeta;
+import at.huber.youtubeExtractor.YtFile;
+
+/**
+ * In-process LRU cache of extraction results keyed by video ID.
+ *
+ * <p>Entries expire shortly before the signed googlevideo URLs they hold, as given by the {@code
+ * expire=} parameter of the stream URLs. Access is synchronized so lookups may come from any
+ * thread.
+ */
+final class ExtractionCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 32;
+
+    /** Entries are dropped this long before their URLs actually expire. */
+    private static final long EXPIRY_MARGIN_MS = 60 * 1000;
+
+    /** Used when no stream URL carries an expire parameter. */
+    private static final long DEFAULT_TTL_MS = 30 * 60 * 1000;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /** Returns the cached entry for {@code videoId}, or null if absent or expired. */
+    synchronized Entry get(String videoId) {
+        Entry entry = entries.get(videoId);
+        if (entry != null && entry.expiresAtMs <= SystemClock.elapsedRealtime()) {
+            entries.remove(videoId);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    synchronized void put(String videoId, SparseArray<YtFile> ytFiles, VideoMeta videoMeta) {
+        if (ytFiles == null || ytFiles.size() == 0) {
+            return;
+        }
+        entries.put(videoId, new Entry(ytFiles, videoMeta, computeExpiry(ytFiles)));
+        trimToSize();
+    }
+
+    synchronized void remove(String videoId) {
+        entries.remove(videoId);
+    }
+
+    synchronized void clear() {
+        evictions += entries.size();
+        entries.clear();
+    }
+
+    synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        trimToSize();
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    private void trimToSize() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entries.size() > maxEntries || entry.expiresAtMs <= now) {
+                iterator.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /** Returns the earliest expiry across all stream URLs, on the elapsedRealtime clock. */
+    private static long computeExpiry(SparseArray<YtFile> ytFiles) {
+        long earliestExpireSeconds = Long.MAX_VALUE;
+        for (int i = 0; i < ytFiles.size(); i++) {
+            long expireSeconds = parseExpire(ytFiles.valueAt(i).getUrl());
+            if (expireSeconds > 0 && expireSeconds < earliestExpireSeconds) {
+                earliestExpireSeconds = expireSeconds;
+            }
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (earliestExpireSeconds == Long.MAX_VALUE) {
+            return now + DEFAULT_TTL_MS;
+        }
+        long ttlMs = earliestExpireSeconds * 1000 - System.currentTimeMillis() - EXPIRY_MARGIN_MS;
+        return now + Math.max(0, ttlMs);
+    }
+
+    /**
+     * Returns the {@code expire} value of a googlevideo URL in epoch seconds, or 0 if absent. Both
+     * the query form ({@code ?expire=123}) and the path form ({@code /expire/123/}) are understood.
+     */
+    static long parseExpire(String url) {
+        if (url == null) {
+            return 0;
+        }
+        Uri uri = Uri.parse(url);
+        String expire = uri.getQueryParameter("expire");
+        if (expire == null) {
+            List<String> segments = uri.getPathSegments();
+            int index = segments.indexOf("expire");
+            if (index >= 0 && index + 1 < segments.size()) {
+                expire = segments.get(index + 1);
+            }
+        }
+        if (expire == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(expire);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static final class Entry {
+        final SparseArray<YtFile> ytFiles;
+        final VideoMeta videoMeta;
+        final long expiresAtMs;
+
+        Entry(SparseArray<YtFile> ytFiles, VideoMeta videoMeta, long expiresAtMs) {
+            this.ytFiles = ytFiles;
+            this.videoMeta = videoMeta;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+}
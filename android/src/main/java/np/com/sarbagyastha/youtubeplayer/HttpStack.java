@@ -0,0 +1,130 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+/**
+ * Plugin-wide HTTP stack shared by all ExoPlayer data sources and the live stream probe.
+ *
+ * <p>A single {@link OkHttpClient} lets the video and audio tracks of a player, and all players of
+ * a feed, share pooled connections, HTTP/2 multiplexing and TLS sessions. Host names go through the
+ * system resolver, which honours record TTLs, and a pooled connection skips the lookup altogether.
+ * Network transfers also feed a shared bandwidth estimate used for adaptive quality and by every
+ * player. Once {@link #init} was called, the estimate starts from the one saved for the current
+ * network type and is saved again as transfers complete.
+ */
+final class HttpStack {
+
+    static final String USER_AGENT = "ExoPlayer";
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static OkHttpClient client;
+
+    private static DefaultBandwidthMeter bandwidthMeter;
+
+    private static BandwidthStore bandwidthStore;
+
+    private static long initialBitrateEstimate;
+
+    private static volatile boolean sampled;
+
+    private HttpStack() {}
+
+    static synchronized OkHttpClient getClient() {
+        if (client == null) {
+            client = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .connectTimeout(DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    .readTimeout(DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    .followRedirects(true)
+                    .followSslRedirects(true)
+                    .build();
+        }
+        return client;
+    }
+
+    /**
+     * Creates the shared bandwidth meter starting from the estimate saved for the current network
+     * type. Has no effect once the meter exists.
+     */
+    static synchronized void init(Context context) {
+        if (bandwidthMeter != null) {
+            return;
+        }
+        bandwidthStore = new BandwidthStore(context);
+        initialBitrateEstimate = bandwidthStore.load();
+        DefaultBandwidthMeter.Builder builder = new DefaultBandwidthMeter.Builder();
+        if (initialBitrateEstimate > 0) {
+            builder.setInitialBitrateEstimate(initialBitrateEstimate);
+        }
+        bandwidthMeter = builder.build();
+        bandwidthMeter.addEventListener(
+                new Handler(Looper.getMainLooper()),
+                (elapsedMs, bytes, bitrate) -> {
+                    sampled = true;
+                    // The sample is a single transfer; the meter's estimate smooths over many.
+                    bandwidthStore.maybeSave(bandwidthMeter.getBitrateEstimate());
+                });
+    }
+
+    /** Returns the bandwidth meter shared by all data sources and players. */
+    static synchronized DefaultBandwidthMeter getBandwidthMeter() {
+        if (bandwidthMeter == null) {
+            bandwidthMeter = new DefaultBandwidthMeter.Builder().build();
+        }
+        return bandwidthMeter;
+    }
+
+    /** Returns a data source factory backed by the shared client. */
+    static DataSource.Factory newDataSourceFactory() {
+        return new OkHttpDataSourceFactory(getClient(), USER_AGENT, getBandwidthMeter());
+    }
+
+    /** Returns the bandwidth estimate of network transfers in bits per second. */
+    static long getBitrateEstimate() {
+        return getBandwidthMeter().getBitrateEstimate();
+    }
+
+    /**
+     * Returns whether the estimate comes from a measurement, in this or a previous session, rather
+     * than ExoPlayer's default.
+     */
+    static synchronized boolean hasMeasuredEstimate() {
+        return initialBitrateEstimate > 0 || sampled;
+    }
+
+    /** Saves the current estimate right away, e.g. before the plugin is destroyed. */
+    static synchronized void saveEstimate() {
+        if (bandwidthStore != null && bandwidthMeter != null) {
+            bandwidthStore.save(bandwidthMeter.getBitrateEstimate());
+        }
+    }
+
+    static synchronized Map<String, Object> getBandwidthStats() {
+        Map<String, Object> stats = bandwidthStore != null ? bandwidthStore.getStats() : new HashMap<>();
+        stats.put("bitrateEstimate", getBitrateEstimate());
+        stats.put("initialBitrateEstimate", initialBitrateEstimate);
+        stats.put("measured", hasMeasuredEstimate());
+        return stats;
+    }
+}
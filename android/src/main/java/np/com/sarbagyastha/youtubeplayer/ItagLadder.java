@@ -0,0 +1,192 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import at.huber.youtubeExtractor.YtFile;
+
+/**
+ * Precomputed itag ladder used to pick the Youtube stream for a requested quality.
+ *
+ * <p>Rungs are ordered by resolution and, within a resolution, by codec preference. A single walk
+ * over the table returns the best stream available at or below the requested height and, in
+ * adaptive mode, at or below the available bandwidth.
+ */
+final class ItagLadder {
+
+    private static final String TAG = "ItagLadder";
+
+    private static final int DEFAULT_MAX_HEIGHT = 720;
+
+    /**
+     * Video rungs, highest resolution first. WEBM (VP9) precedes MP4 (AVC) on each resolution.
+     * Bitrates are typical averages in bits per second, as the extractor does not report them.
+     */
+    private static final Rung[] VIDEO_RUNGS = {
+            new Rung(248, 1080, true, 2600000),
+            new Rung(137, 1080, false, 4300000),
+            new Rung(247, 720, true, 1500000),
+            new Rung(136, 720, false, 2300000),
+            new Rung(244, 480, true, 750000),
+            new Rung(135, 480, false, 1100000),
+            new Rung(243, 360, true, 400000),
+            new Rung(134, 360, false, 650000),
+            new Rung(18, 360, false, 700000),
+            new Rung(242, 240, true, 220000),
+            new Rung(133, 240, false, 300000),
+            new Rung(278, 144, true, 100000),
+            new Rung(160, 144, false, 110000),
+    };
+
+    /** Audio itags in order of preference: M4A 128k first, then the WEBM opus fallbacks. */
+    private static final int[] AUDIO_ITAGS = {140, 251, 250, 249, 171};
+
+    private static volatile Boolean vp9Supported;
+
+    private ItagLadder() {}
+
+    /**
+     * Returns the best video stream with a height at or below {@code quality}, e.g. "720p". If no
+     * stream fits under the cap, the lowest available stream above it is returned instead. Returns
+     * null when {@code ytFiles} contains no known video itag.
+     */
+    static YtFile resolveVideo(SparseArray<YtFile> ytFiles, String quality) {
+        int maxHeight = parseHeight(quality);
+        Rung selected = select(ytFiles, maxHeight, Long.MAX_VALUE);
+        if (selected == null) {
+            return null;
+        }
+        Log.i(TAG, "Quality: " + selected.height + "p " + (selected.vp9 ? "WEBM" : "MP4")
+                + (selected.height != maxHeight ? " [Adapted]" : ""));
+        return ytFiles.get(selected.itag);
+    }
+
+    /**
+     * Returns the stream to start a video with: {@link #resolveVideo(SparseArray, String)}, further
+     * capped by the bandwidth estimate once one was measured in this or an earlier session.
+     */
+    static YtFile resolveStartupVideo(SparseArray<YtFile> ytFiles, String quality) {
+        if (!HttpStack.hasMeasuredEstimate()) {
+            return resolveVideo(ytFiles, quality);
+        }
+        long allowedBitrate = AdaptiveQuality.allowedBitrate(HttpStack.getBandwidthMeter());
+        Rung selected = select(ytFiles, parseHeight(quality), allowedBitrate);
+        if (selected == null) {
+            return null;
+        }
+        Log.i(TAG, "Quality: " + selected.height + "p " + (selected.vp9 ? "WEBM" : "MP4")
+                + (selected.height != parseHeight(quality) ? " [Adapted to bandwidth]" : ""));
+        return ytFiles.get(selected.itag);
+    }
+
+    /**
+     * Returns the best video stream with a height at or below {@code quality} and a bitrate at or
+     * below {@code maxBitrate}. If no stream fits, the lowest available stream is returned instead.
+     * Returns null when {@code ytFiles} contains no known video itag.
+     */
+    static YtFile resolveVideo(SparseArray<YtFile> ytFiles, String quality, long maxBitrate) {
+        Rung selected = select(ytFiles, parseHeight(quality), maxBitrate);
+        return selected != null ? ytFiles.get(selected.itag) : null;
+    }
+
+    private static Rung select(SparseArray<YtFile> ytFiles, int maxHeight, long maxBitrate) {
+        boolean preferVp9 = isVp9Supported();
+        Rung best = null;
+        Rung fallback = null;
+        for (Rung rung : VIDEO_RUNGS) {
+            if (rung.vp9 && !preferVp9) {
+                continue;
+            }
+            if (ytFiles.indexOfKey(rung.itag) < 0) {
+                continue;
+            }
+            if (rung.height > maxHeight || rung.bitrate > maxBitrate) {
+                fallback = rung;
+            } else {
+                best = rung;
+                break;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    /** Returns the preferred audio-only stream, or null when none was extracted. */
+    static YtFile resolveAudio(SparseArray<YtFile> ytFiles) {
+        for (int itag : AUDIO_ITAGS) {
+            if (ytFiles.indexOfKey(itag) >= 0) {
+                return ytFiles.get(itag);
+            }
+        }
+        return null;
+    }
+
+    /** Returns the height of a video stream, e.g. 720, or 0 for an unknown itag. */
+    static int heightOf(YtFile ytFile) {
+        int itag = ytFile.getFormat().getItag();
+        for (Rung rung : VIDEO_RUNGS) {
+            if (rung.itag == itag) {
+                return rung.height;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns true if the video itag already carries an audio track. */
+    static boolean isMuxed(YtFile ytFile) {
+        return ytFile.getFormat().getItag() == 18;
+    }
+
+    /** Returns the height of a quality such as "720p", or 720 when it cannot be parsed. */
+    static int parseHeight(String quality) {
+        if (quality != null && quality.endsWith("p")) {
+            try {
+                return Integer.parseInt(quality.substring(0, quality.length() - 1));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Unknown quality " + quality);
+            }
+        }
+        return DEFAULT_MAX_HEIGHT;
+    }
+
+    /**
+     * VP9 is only preferred when the device has a hardware decoder for it. Software VP9 decoding
+     * above SD drops frames on most devices, where AVC is hardware decoded almost everywhere.
+     */
+    private static boolean isVp9Supported() {
+        if (vp9Supported == null) {
+            boolean supported = false;
+            try {
+                MediaCodecInfo decoder = MediaCodecUtil.getDecoderInfo(MimeTypes.VIDEO_VP9, false);
+                supported = decoder != null
+                        && !decoder.name.startsWith("OMX.google.")
+                        && !decoder.name.startsWith("c2.android.");
+            } catch (MediaCodecUtil.DecoderQueryException e) {
+                Log.w(TAG, "Unable to query VP9 decoders", e);
+            }
+            vp9Supported = supported;
+        }
+        return vp9Supported;
+    }
+
+    private static final class Rung {
+        final int itag;
+        final int height;
+        final boolean vp9;
+        final long bitrate;
+
+        Rung(int itag, int height, boolean vp9, long bitrate) {
+            this.itag = itag;
+            this.height = height;
+            this.vp9 = vp9;
+            this.bitrate = bitrate;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+
+/**
+ * Keeps live playback close to a target offset behind the live edge.
+ *
+ * <p>The latency is measured against the wall clock when the playlist carries program date times,
+ * and against the end of the live window otherwise. Small deviations are corrected by playing
+ * slightly faster or slower; when playback falls far behind, e.g. after a long rebuffer, it seeks
+ * back to the target offset instead. With a target of 0 the latency is only measured.
+ *
+ * <p>The target is kept within the live window: no closer to the live edge than the window's
+ * default position, where ExoPlayer can play without running out of segments, and no further
+ * behind than the start of the window.
+ */
+final class LiveLatencyController {
+
+    static final long CHECK_INTERVAL_MS = 1000;
+
+    private static final long TOLERANCE_MS = 500;
+
+    private static final long MAX_CATCH_UP_MS = 20000;
+
+    /** Speed change per millisecond away from the target, so 5 s behind plays at 1.05x. */
+    private static final float SPEED_PER_MS = 0.00001f;
+
+    private static final float MIN_SPEED = 0.97f;
+
+    private static final float MAX_SPEED = 1.08f;
+
+    private final Timeline.Window window = new Timeline.Window();
+
+    private long targetOffsetMs;
+
+    private boolean seekedToTarget;
+
+    private long latencyMs = C.TIME_UNSET;
+
+    private float speed = 1f;
+
+    LiveLatencyController(long targetOffsetMs) {
+        this.targetOffsetMs = Math.max(0, targetOffsetMs);
+    }
+
+    void setTargetOffsetMs(long targetOffsetMs) {
+        this.targetOffsetMs = Math.max(0, targetOffsetMs);
+        seekedToTarget = false;
+    }
+
+    long getTargetOffsetMs() {
+        return targetOffsetMs;
+    }
+
+    long getLatencyMs() {
+        return latencyMs;
+    }
+
+    float getSpeed() {
+        return speed;
+    }
+
+    /** Starts over on a new player, which plays at normal speed. */
+    void reset() {
+        seekedToTarget = false;
+        latencyMs = C.TIME_UNSET;
+        speed = 1f;
+    }
+
+    /**
+     * Measures the latency of {@code player} and corrects its speed or position. Returns false
+     * while the latency is unknown, e.g. before the first playlist loaded.
+     */
+    boolean update(SimpleExoPlayer player) {
+        latencyMs = measureLatency(player);
+        if (latencyMs == C.TIME_UNSET) {
+            return false;
+        }
+        if (targetOffsetMs == 0 || player.getPlaybackState() != Player.STATE_READY) {
+            // Catching up while buffering would only run into the live edge again.
+            setSpeed(player, 1f);
+            return true;
+        }
+        long positionMs = player.getCurrentPosition();
+        long durationMs = window.getDurationMs();
+        long defaultPositionMs = window.defaultPositionUs == C.TIME_UNSET
+                ? durationMs
+                : Math.min(window.getDefaultPositionMs(), durationMs);
+        // The latency at the end of the window, which is more than 0 when measured by wall clock.
+        long edgeLatencyMs = latencyMs - (durationMs - positionMs);
+        long targetMs = Math.max(
+                edgeLatencyMs + durationMs - defaultPositionMs,
+                Math.min(edgeLatencyMs + durationMs, targetOffsetMs));
+        long errorMs = latencyMs - targetMs;
+        if (!seekedToTarget || errorMs > MAX_CATCH_UP_MS) {
+            // Start at the target rather than at ExoPlayer's default of three segments back.
+            seekedToTarget = true;
+            if (Math.abs(errorMs) > TOLERANCE_MS) {
+                long seekPositionMs = Math.max(0, Math.min(defaultPositionMs, positionMs + errorMs));
+                player.seekTo(seekPositionMs);
+                latencyMs -= seekPositionMs - positionMs;
+                errorMs = latencyMs - targetMs;
+            }
+        }
+        float targetSpeed = 1f;
+        if (Math.abs(errorMs) > TOLERANCE_MS) {
+            targetSpeed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, 1f + errorMs * SPEED_PER_MS));
+            // Coarse steps, as every change resets the audio pipeline.
+            targetSpeed = Math.round(targetSpeed * 100) / 100f;
+        }
+        setSpeed(player, targetSpeed);
+        return true;
+    }
+
+    private void setSpeed(SimpleExoPlayer player, float targetSpeed) {
+        if (targetSpeed != speed) {
+            speed = targetSpeed;
+            player.setPlaybackParameters(new PlaybackParameters(speed));
+        }
+    }
+
+    private long measureLatency(SimpleExoPlayer player) {
+        Timeline timeline = player.getCurrentTimeline();
+        if (timeline.isEmpty()) {
+            return C.TIME_UNSET;
+        }
+        timeline.getWindow(player.getCurrentWindowIndex(), window);
+        if (!window.isDynamic || window.durationUs == C.TIME_UNSET) {
+            return C.TIME_UNSET;
+        }
+        long positionMs = player.getCurrentPosition();
+        if (window.windowStartTimeMs != C.TIME_UNSET) {
+            return Math.max(0, System.currentTimeMillis() - (window.windowStartTimeMs + positionMs));
+        }
+        return Math.max(0, window.getDurationMs() - positionMs);
+    }
+}
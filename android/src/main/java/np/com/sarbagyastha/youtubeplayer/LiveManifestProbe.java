@@ -0,0 +1,189 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Finds the HLS manifest URL of a live video from its watch page.
+ *
+ * <p>The page is scanned as it streams in through a fixed-size buffer, and the download stops as
+ * soon as the manifest URL is parsed. The page itself is never held in memory.
+ */
+final class LiveManifestProbe {
+
+    private static final String TAG = "LiveManifestProbe";
+
+    private static final String TOKEN = "hlsManifestUrl";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final int MAX_URL_LENGTH = 4 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final AtomicLong probes = new AtomicLong();
+
+    private static final AtomicLong lastCharsScanned = new AtomicLong();
+
+    private static final AtomicLong lastTimeToManifestMs = new AtomicLong();
+
+    private static final AtomicLong totalCharsScanned = new AtomicLong();
+
+    private LiveManifestProbe() {}
+
+    /**
+     * Fetches the watch page of {@code videoId} and returns its {@code hlsManifestUrl}, or null if
+     * the video is not live. The HTTP call is bounded by {@code timeoutMs} and cancelled with
+     * {@code job}.
+     */
+    static String fetchManifestUrl(String videoId, ResolverExecutor.Job<?> job, long timeoutMs)
+            throws IOException {
+        long startMs = SystemClock.elapsedRealtime();
+        Request request = new Request.Builder()
+                .url("https://www.youtube.com/watch?v=" + videoId)
+                .build();
+        Call call = HttpStack.getClient().newCall(request);
+        call.timeout().timeout(timeoutMs, TimeUnit.MILLISECONDS);
+        job.setCancelHook(call::cancel);
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Watch page request failed with " + response.code());
+            }
+            Scanner scanner = new Scanner();
+            String manifestUrl;
+            try (Reader reader = new InputStreamReader(response.body().byteStream(), UTF_8)) {
+                manifestUrl = scanner.scan(reader);
+            }
+            probes.incrementAndGet();
+            lastCharsScanned.set(scanner.charsScanned);
+            totalCharsScanned.addAndGet(scanner.charsScanned);
+            lastTimeToManifestMs.set(SystemClock.elapsedRealtime() - startMs);
+            if (manifestUrl == null) {
+                Log.i(TAG, "This is not a Live Video. Set isLive = false");
+            }
+            return manifestUrl;
+        }
+    }
+
+    static Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("probes", probes.get());
+        stats.put("bufferSize", BUFFER_SIZE);
+        stats.put("lastCharsScanned", lastCharsScanned.get());
+        stats.put("totalCharsScanned", totalCharsScanned.get());
+        stats.put("lastTimeToManifestMs", lastTimeToManifestMs.get());
+        return stats;
+    }
+
+    /**
+     * Streaming scanner for {@code "hlsManifestUrl":"<url>"}. The value may be JSON-escaped once or
+     * twice, e.g. {@code \"hlsManifestUrl\":\"https:\\/\\/...\"}, and may contain {@code &} and
+     * {@code ,}, so only the closing quote ends it.
+     */
+    static final class Scanner {
+        private final char[] buffer = new char[BUFFER_SIZE];
+
+        private int position;
+
+        private int limit;
+
+        long charsScanned;
+
+        private Reader reader;
+
+        String scan(Reader reader) throws IOException {
+            this.reader = reader;
+            if (!skipPastToken()) {
+                return null;
+            }
+            // Skip the separator between key and value, e.g. ":" or \":\".
+            int c = read();
+            while (c == '"' || c == '\\' || c == ':' || Character.isWhitespace(c)) {
+                c = read();
+            }
+            StringBuilder url = new StringBuilder(256);
+            while (c != -1 && url.length() < MAX_URL_LENGTH) {
+                if (c == '\\') {
+                    c = read();
+                    while (c == '\\') {
+                        c = read();
+                    }
+                    if (c == 'u') {
+                        c = readUnicodeEscape();
+                    } else if (c == '"') {
+                        break;
+                    }
+                    if (c == -1) {
+                        break;
+                    }
+                } else if (c == '"') {
+                    break;
+                }
+                url.append((char) c);
+                c = read();
+            }
+            return url.length() > 0 ? url.toString() : null;
+        }
+
+        /** Consumes input up to and including {@link #TOKEN}. Returns false if it never appears. */
+        private boolean skipPastToken() throws IOException {
+            // The first character of the token does not recur in it, so a mismatch can restart at
+            // the current character without backtracking.
+            int matched = 0;
+            int c;
+            while ((c = read()) != -1) {
+                if (c == TOKEN.charAt(matched)) {
+                    matched++;
+                    if (matched == TOKEN.length()) {
+                        return true;
+                    }
+                } else {
+                    matched = c == TOKEN.charAt(0) ? 1 : 0;
+                }
+            }
+            return false;
+        }
+
+        private int readUnicodeEscape() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                value = value * 16 + digit;
+            }
+            return value;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+                charsScanned += limit;
+            }
+            return buffer[position++];
+        }
+    }
+}
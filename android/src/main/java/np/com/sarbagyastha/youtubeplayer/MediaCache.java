@@ -0,0 +1,88 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.FileDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSinkFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Disk-backed media cache shared by all players of the process.
+ *
+ * <p>ExoPlayer allows only one {@link SimpleCache} per directory, so the cache is created once
+ * with the size requested by the first player enabling it. Reads served from disk are counted so
+ * the hit rate can be reported.
+ */
+final class MediaCache {
+
+    private static final String TAG = "MediaCache";
+
+    private static final String CACHE_DIRECTORY = "youtube_player";
+
+    private static SimpleCache cache;
+
+    private static long maxBytes;
+
+    private static long cachedBytesRead;
+
+    private MediaCache() {}
+
+    /**
+     * Wraps {@code upstreamFactory} with the shared cache. Returns {@code upstreamFactory} unchanged
+     * when {@code requestedMaxBytes} is not positive.
+     */
+    static synchronized DataSource.Factory wrap(
+            Context context, long requestedMaxBytes, DataSource.Factory upstreamFactory) {
+        if (requestedMaxBytes <= 0) {
+            return upstreamFactory;
+        }
+        if (cache == null) {
+            File directory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+            cache = new SimpleCache(directory, new LeastRecentlyUsedCacheEvictor(requestedMaxBytes));
+            maxBytes = requestedMaxBytes;
+        } else if (requestedMaxBytes != maxBytes) {
+            Log.w(TAG, "Media cache already created with " + maxBytes + " bytes, ignoring " + requestedMaxBytes);
+        }
+        return new CacheDataSourceFactory(
+                cache,
+                upstreamFactory,
+                new FileDataSourceFactory(),
+                new CacheDataSinkFactory(cache, CacheDataSource.DEFAULT_MAX_CACHE_FILE_SIZE),
+                CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+                new CacheDataSource.EventListener() {
+                    @Override
+                    public void onCachedBytesRead(long cacheSizeBytes, long cachedBytes) {
+                        onCacheRead(cachedBytes);
+                    }
+
+                    @Override
+                    public void onCacheIgnored(int reason) {}
+                });
+    }
+
+    private static synchronized void onCacheRead(long cachedBytes) {
+        cachedBytesRead += cachedBytes;
+    }
+
+    static synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", cache != null);
+        stats.put("maxBytes", maxBytes);
+        stats.put("cacheSpace", cache != null ? cache.getCacheSpace() : 0L);
+        stats.put("cachedBytesRead", cachedBytesRead);
+        return stats;
+    }
+}
@@ -0,0 +1,120 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.MergingMediaSource;
+import com.google.android.exoplayer2.source.hls.HlsMediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.util.Util;
+
+import at.huber.youtubeExtractor.YtFile;
+
+/** Builds the {@link MediaSource}s played by {@code YoutubePlayer} and preloaded players. */
+final class MediaSources {
+
+    private static final String TAG = "MediaSources";
+
+    private MediaSources() {}
+
+    /**
+     * Builds the merged video and audio source for {@code quality} out of extracted streams.
+     * Returns null when no known video itag was extracted.
+     */
+    static MediaSource buildVodSource(
+            Context context, SparseArray<YtFile> ytFiles, String videoId, String quality, long maxCacheSize) {
+        YtFile video = ItagLadder.resolveStartupVideo(ytFiles, quality);
+        if (video == null) {
+            return null;
+        }
+        return buildVodSource(context, ytFiles, videoId, video, maxCacheSize);
+    }
+
+    /** Builds the merged source for the given {@code video} stream and the preferred audio. */
+    static MediaSource buildVodSource(
+            Context context, SparseArray<YtFile> ytFiles, String videoId, YtFile video, long maxCacheSize) {
+        YtFile audio = ItagLadder.isMuxed(video) ? null : ItagLadder.resolveAudio(ytFiles);
+
+        DataSource.Factory dataSourceFactory =
+                MediaCache.wrap(context, maxCacheSize, HttpStack.newDataSourceFactory());
+
+        Uri vUri = Uri.parse(video.getUrl());
+        Uri aUri = audio != null ? Uri.parse(audio.getUrl()) : null;
+        return buildMediaSource(
+                vUri, aUri, dataSourceFactory, cacheKey(videoId, video), cacheKey(videoId, audio));
+    }
+
+    /**
+     * Builds the source of the preferred audio-only stream, without any video. Returns null when
+     * no audio-only itag was extracted.
+     */
+    static MediaSource buildAudioSource(
+            Context context, SparseArray<YtFile> ytFiles, String videoId, long maxCacheSize) {
+        YtFile audio = ItagLadder.resolveAudio(ytFiles);
+        if (audio == null) {
+            return null;
+        }
+        DataSource.Factory dataSourceFactory =
+                MediaCache.wrap(context, maxCacheSize, HttpStack.newDataSourceFactory());
+        return buildMediaSource(Uri.parse(audio.getUrl()), null, dataSourceFactory, cacheKey(videoId, audio), null);
+    }
+
+    /**
+     * Signed stream URLs change on every extraction, so cached bytes are keyed by video ID and
+     * itag instead.
+     */
+    private static String cacheKey(String videoId, YtFile ytFile) {
+        return ytFile != null ? videoId + ":" + ytFile.getFormat().getItag() : null;
+    }
+
+    /**
+     * Builds the source of a live HLS manifest. Chunkless preparation reads the formats from the
+     * master playlist, so playback starts without downloading a segment first.
+     */
+    static MediaSource buildLiveSource(Uri uri, DataSource.Factory mediaDataSourceFactory) {
+        Log.i(TAG, "Media Type: HLS (live)");
+        return new HlsMediaSource.Factory(mediaDataSourceFactory)
+                .setAllowChunklessPreparation(true)
+                .createMediaSource(uri);
+    }
+
+    static MediaSource buildMediaSource(
+            Uri vuri,Uri auri, DataSource.Factory mediaDataSourceFactory) {
+        return buildMediaSource(vuri, auri, mediaDataSourceFactory, null, null);
+    }
+
+    static MediaSource buildMediaSource(
+            Uri vuri, Uri auri, DataSource.Factory mediaDataSourceFactory, String vCacheKey, String aCacheKey) {
+        int type = Util.inferContentType(vuri.getLastPathSegment());
+        if (type == C.TYPE_HLS) {
+            Log.i(TAG, "Media Type: HLS");
+            return new HlsMediaSource.Factory(mediaDataSourceFactory).createMediaSource(vuri);
+        } else if (type == C.TYPE_OTHER) {
+            Log.i(TAG, "Media Type: GENERAL");
+            ExtractorMediaSource vESource = new ExtractorMediaSource.Factory(mediaDataSourceFactory)
+                    .setExtractorsFactory(new DefaultExtractorsFactory())
+                    .setCustomCacheKey(vCacheKey)
+                    .createMediaSource(vuri);
+            if (auri == null) {
+                return vESource;
+            }
+            ExtractorMediaSource aESource = new ExtractorMediaSource.Factory(mediaDataSourceFactory)
+                    .setExtractorsFactory(new DefaultExtractorsFactory())
+                    .setCustomCacheKey(aCacheKey)
+                    .createMediaSource(auri);
+            return new MergingMediaSource(vESource, aESource);
+        } else {
+            throw new IllegalStateException("Unsupported type: " + type);
+        }
+    }
+}
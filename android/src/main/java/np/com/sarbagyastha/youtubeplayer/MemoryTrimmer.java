@@ -0,0 +1,120 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Bundle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps memory pressure and app visibility to trim stages for the plugin.
+ *
+ * <p>{@link #STAGE_CACHES} drops what can be rebuilt cheaply: preloaded players, idle pooled
+ * players, extraction results, and buffer beyond a short window. {@link #STAGE_DECODERS} also
+ * releases the decoders of paused players, which resume from their position when used again.
+ * When an activity of the app starts again, the buffer limit is lifted.
+ */
+final class MemoryTrimmer implements ComponentCallbacks2, Application.ActivityLifecycleCallbacks {
+
+    static final int STAGE_NONE = 0;
+
+    static final int STAGE_CACHES = 1;
+
+    static final int STAGE_DECODERS = 2;
+
+    interface Listener {
+        void onTrim(int stage, int level);
+
+        void onTrimLifted();
+    }
+
+    private final Listener listener;
+
+    private int trims;
+
+    private int lastLevel = -1;
+
+    private int lastStage = STAGE_NONE;
+
+    private boolean trimmed;
+
+    MemoryTrimmer(Listener listener) {
+        this.listener = listener;
+    }
+
+    static int stageFor(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return STAGE_DECODERS;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return STAGE_CACHES;
+        }
+        return STAGE_NONE;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trim(stageFor(level), level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(STAGE_DECODERS, TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {}
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        if (trimmed) {
+            trimmed = false;
+            listener.onTrimLifted();
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {}
+
+    @Override
+    public void onActivityResumed(Activity activity) {}
+
+    @Override
+    public void onActivityPaused(Activity activity) {}
+
+    @Override
+    public void onActivityStopped(Activity activity) {}
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {}
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("trims", trims);
+        stats.put("lastLevel", lastLevel);
+        stats.put("lastStage", lastStage);
+        stats.put("trimmed", trimmed);
+        return stats;
+    }
+
+    private void trim(int stage, int level) {
+        if (stage == STAGE_NONE) {
+            return;
+        }
+        trims++;
+        lastLevel = level;
+        lastStage = stage;
+        trimmed = true;
+        listener.onTrim(stage, level);
+    }
+}
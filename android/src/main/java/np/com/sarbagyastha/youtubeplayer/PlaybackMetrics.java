@@ -0,0 +1,164 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.os.SystemClock;
+import android.view.Surface;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quality of experience metrics of one {@code YoutubePlayer}, collected from the {@link
+ * AnalyticsListener} of whichever ExoPlayer it currently uses.
+ *
+ * <p>Time to first frame is split into extraction (create until streams are resolved), prepare
+ * (until the player is first ready) and render (until the first frame is on the surface). All
+ * callbacks and reads happen on the main thread.
+ */
+final class PlaybackMetrics implements AnalyticsListener {
+
+    private final long createdAtMs = SystemClock.elapsedRealtime();
+
+    private long resolvedAtMs = C.TIME_UNSET;
+
+    private long readyAtMs = C.TIME_UNSET;
+
+    private long firstFrameAtMs = C.TIME_UNSET;
+
+    private int rebufferCount;
+
+    private long rebufferMs;
+
+    private int droppedFrames;
+
+    private long bytesLoaded;
+
+    private long bitrateEstimate;
+
+    private int formatChanges;
+
+    private Format videoFormat;
+
+    private int errors;
+
+    private String lastError;
+
+    /** Streams were resolved and the player is about to be prepared. */
+    void markResolved() {
+        if (resolvedAtMs == C.TIME_UNSET) {
+            resolvedAtMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /** A preloaded player was taken over, so extraction and prepare already happened. */
+    void markWarmStart(boolean ready) {
+        markResolved();
+        if (ready) {
+            readyAtMs = resolvedAtMs;
+        }
+    }
+
+    /** Buffering after the player was first ready ended after {@code durationMs}. */
+    void addRebuffer(long durationMs) {
+        rebufferCount++;
+        rebufferMs += durationMs;
+    }
+
+    int getRebufferCount() {
+        return rebufferCount;
+    }
+
+    long getRebufferMs() {
+        return rebufferMs;
+    }
+
+    @Override
+    public void onPlayerStateChanged(EventTime eventTime, boolean playWhenReady, int playbackState) {
+        if (playbackState == Player.STATE_READY && readyAtMs == C.TIME_UNSET) {
+            readyAtMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, Surface surface) {
+        if (firstFrameAtMs == C.TIME_UNSET) {
+            firstFrameAtMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+        this.droppedFrames += droppedFrames;
+    }
+
+    @Override
+    public void onBandwidthEstimate(
+            EventTime eventTime, int totalLoadTimeMs, long totalBytesLoaded, long bitrateEstimate) {
+        this.bitrateEstimate = bitrateEstimate;
+    }
+
+    @Override
+    public void onLoadCompleted(
+            EventTime eventTime,
+            MediaSourceEventListener.LoadEventInfo loadEventInfo,
+            MediaSourceEventListener.MediaLoadData mediaLoadData) {
+        bytesLoaded += loadEventInfo.bytesLoaded;
+    }
+
+    @Override
+    public void onDownstreamFormatChanged(
+            EventTime eventTime, MediaSourceEventListener.MediaLoadData mediaLoadData) {
+        Format format = mediaLoadData.trackFormat;
+        if (format != null && format.height != Format.NO_VALUE) {
+            formatChanges++;
+            videoFormat = format;
+        }
+    }
+
+    @Override
+    public void onPlayerError(EventTime eventTime, ExoPlaybackException error) {
+        errors++;
+        lastError = error.toString();
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("extractionMs", elapsed(createdAtMs, resolvedAtMs));
+        metrics.put("prepareMs", elapsed(resolvedAtMs, readyAtMs));
+        metrics.put("renderMs", elapsed(readyAtMs, firstFrameAtMs));
+        metrics.put("timeToFirstFrameMs", elapsed(createdAtMs, firstFrameAtMs));
+        metrics.put("rebufferCount", rebufferCount);
+        metrics.put("rebufferMs", rebufferMs);
+        metrics.put("droppedFrames", droppedFrames);
+        metrics.put("bytesLoaded", bytesLoaded);
+        metrics.put("bitrateEstimate", bitrateEstimate > 0 ? bitrateEstimate : HttpStack.getBitrateEstimate());
+        metrics.put("formatChanges", formatChanges);
+        if (videoFormat != null) {
+            metrics.put("width", videoFormat.width);
+            metrics.put("height", videoFormat.height);
+            metrics.put("bitrate", videoFormat.bitrate);
+            metrics.put("codecs", videoFormat.codecs);
+        }
+        metrics.put("errors", errors);
+        metrics.put("lastError", lastError);
+        return metrics;
+    }
+
+    /** Returns the milliseconds between two marks, or -1 if either has not happened yet. */
+    private static long elapsed(long fromMs, long toMs) {
+        if (fromMs == C.TIME_UNSET || toMs == C.TIME_UNSET) {
+            return -1;
+        }
+        return Math.max(0, toMs - fromMs);
+    }
+}
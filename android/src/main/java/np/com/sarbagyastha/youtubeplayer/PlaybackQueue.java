@@ -0,0 +1,385 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.huber.youtubeExtractor.YtFile;
+
+/**
+ * Plays a list of videos on one player through a {@link ConcatenatingMediaSource}.
+ *
+ * <p>Items are extracted lazily: only the current item and the one after it are resolved, and a
+ * resolved item is inserted into the concatenated source at its queue position. The player then
+ * buffers the next item before the current one ends, so moving on is gapless and keeps the
+ * texture, renderers and decoders. Items whose extraction fails are skipped.
+ *
+ * <p>While the owning player is demoted the queue is detached from its ExoPlayer. Skips and
+ * rebuilds made meanwhile are held and applied when a player is attached again.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+final class PlaybackQueue {
+
+    private static final String TAG = "PlaybackQueue";
+
+    /** Resolves the streams of an item, see {@link StreamResolver#resolve}. */
+    interface Resolver {
+        ResolverExecutor.Job<SparseArray<YtFile>> resolve(
+                Context context, String videoId, StreamResolver.Callback callback);
+    }
+
+    private final Context context;
+
+    private final Resolver resolver;
+
+    private PooledPlayer pooledPlayer;
+
+    private SimpleExoPlayer player;
+
+    private final long maxCacheSize;
+
+    private final List<Item> items = new ArrayList<>();
+
+    private ConcatenatingMediaSource concatenatingSource = new ConcatenatingMediaSource();
+
+    private String quality;
+
+    private boolean audioOnly;
+
+    private boolean prepared;
+
+    private Item pendingSkip;
+
+    private long pendingSkipPositionMs = C.TIME_UNSET;
+
+    /** The item played when the queue was detached, or null while attached. */
+    private Item detachedItem;
+
+    private long detachedPositionMs;
+
+    PlaybackQueue(
+            Context context, PooledPlayer pooledPlayer, String quality, boolean audioOnly, long maxCacheSize) {
+        this(context, pooledPlayer, quality, audioOnly, maxCacheSize, StreamResolver::resolve);
+    }
+
+    PlaybackQueue(
+            Context context,
+            PooledPlayer pooledPlayer,
+            String quality,
+            boolean audioOnly,
+            long maxCacheSize,
+            Resolver resolver) {
+        this.context = context;
+        this.resolver = resolver;
+        setPlayer(pooledPlayer);
+        this.quality = quality;
+        this.audioOnly = audioOnly;
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Moves the queue to {@code pooledPlayer}, which must already be prepared with its source
+     * unless {@link #isPrepared} is false, and applies a skip or rebuild held while detached.
+     */
+    void setPlayer(PooledPlayer pooledPlayer) {
+        this.pooledPlayer = pooledPlayer;
+        this.player = pooledPlayer != null ? pooledPlayer.player : null;
+        if (player == null) {
+            return;
+        }
+        detachedItem = null;
+        if (pendingSkip != null && pendingSkip.source != null) {
+            onResolved(pendingSkip);
+        }
+    }
+
+    /**
+     * Detaches the queue from its player before the player is given back to the pool, keeping the
+     * current item and position for the skips and rebuilds made until {@link #setPlayer}.
+     */
+    void detach() {
+        if (player != null) {
+            int currentIndex = getCurrentIndex();
+            detachedItem = currentIndex >= 0 ? items.get(currentIndex) : null;
+            detachedPositionMs = player.getCurrentPosition();
+        }
+        pooledPlayer = null;
+        player = null;
+    }
+
+    /** Returns false while the concatenated source was rebuilt and not yet prepared. */
+    boolean isPrepared() {
+        return prepared;
+    }
+
+    /**
+     * Replaces the queue and starts playing {@code startIndex} once it is resolved. Until then the
+     * player keeps playing what it played before.
+     */
+    void setQueue(List<String> videoIds, int startIndex) {
+        release();
+        concatenatingSource = new ConcatenatingMediaSource();
+        prepared = false;
+        for (String videoId : videoIds) {
+            items.add(new Item(videoId));
+        }
+        if (!items.isEmpty()) {
+            skipTo(Math.max(0, Math.min(startIndex, items.size() - 1)));
+        }
+    }
+
+    /** Inserts {@code videoId} at {@code index}, or appends it for a negative index. */
+    void add(String videoId, int index) {
+        Item item = new Item(videoId);
+        if (index < 0 || index > items.size()) {
+            items.add(item);
+        } else {
+            items.add(index, item);
+        }
+        prefetchNext();
+    }
+
+    /** Removes the item at {@code index}. Removing the current item moves on to the next one. */
+    void remove(int index) {
+        if (index < 0 || index >= items.size()) {
+            throw new IndexOutOfBoundsException("No queue item at " + index);
+        }
+        Item item = items.get(index);
+        if (item.source != null) {
+            concatenatingSource.removeMediaSource(windowIndexOf(item));
+        }
+        item.cancel();
+        items.remove(index);
+        if (pendingSkip == item) {
+            pendingSkip = null;
+        }
+        prefetchNext();
+    }
+
+    /** Starts playing the item at {@code index}, resolving it first if needed. */
+    void skipTo(int index) {
+        if (index < 0 || index >= items.size()) {
+            throw new IndexOutOfBoundsException("No queue item at " + index);
+        }
+        Item item = items.get(index);
+        if (item.source != null && player != null) {
+            pendingSkip = null;
+            player.seekTo(windowIndexOf(item), C.TIME_UNSET);
+            prefetchNext();
+        } else {
+            pendingSkip = item;
+            pendingSkipPositionMs = C.TIME_UNSET;
+            resolve(item);
+        }
+    }
+
+    /**
+     * Sets the quality of items prepared from now on and rebuilds the current one at its position.
+     * The other resolved items are dropped and resolved again when they come up.
+     */
+    void setQuality(String quality) {
+        this.quality = quality;
+        int currentIndex = getCurrentIndex();
+        if (currentIndex >= 0) {
+            rebuildAt(currentIndex, getCurrentPositionMs());
+        }
+    }
+
+    /** Switches items to their audio-only stream or back, rebuilding the current one at its position. */
+    void setAudioOnly(boolean audioOnly) {
+        this.audioOnly = audioOnly;
+        int currentIndex = getCurrentIndex();
+        if (currentIndex >= 0) {
+            rebuildAt(currentIndex, getCurrentPositionMs());
+        }
+    }
+
+    /**
+     * Extracts the current item again, e.g. after its signed URLs expired, and continues it at its
+     * position. Returns false if there is no current item.
+     */
+    boolean refreshCurrent() {
+        int currentIndex = getCurrentIndex();
+        if (currentIndex < 0) {
+            return false;
+        }
+        StreamResolver.extractionCache.remove(items.get(currentIndex).videoId);
+        rebuildAt(currentIndex, getCurrentPositionMs());
+        return true;
+    }
+
+    private void rebuildAt(int index, long positionMs) {
+        for (Item item : items) {
+            // A running extraction would insert a source built for the old settings.
+            item.cancel();
+            item.source = null;
+        }
+        concatenatingSource = new ConcatenatingMediaSource();
+        prepared = false;
+        pendingSkip = items.get(index);
+        pendingSkipPositionMs = positionMs;
+        resolve(pendingSkip);
+    }
+
+    /** Returns the queue index of the item the player is at, or -1 if none. */
+    int getCurrentIndex() {
+        if (player == null) {
+            Item current = pendingSkip != null ? pendingSkip : detachedItem;
+            return current != null ? items.indexOf(current) : -1;
+        }
+        if (!prepared || player.getCurrentTimeline().isEmpty()) {
+            return -1;
+        }
+        int windowIndex = player.getCurrentWindowIndex();
+        int window = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).source != null) {
+                if (window == windowIndex) {
+                    return i;
+                }
+                window++;
+            }
+        }
+        return -1;
+    }
+
+    private long getCurrentPositionMs() {
+        if (player != null) {
+            return player.getCurrentPosition();
+        }
+        return pendingSkip != null ? pendingSkipPositionMs : detachedPositionMs;
+    }
+
+    String getVideoId(int index) {
+        return index >= 0 && index < items.size() ? items.get(index).videoId : null;
+    }
+
+    /** Called when the player moved to another window, so the item after it gets resolved. */
+    void onCurrentItemChanged() {
+        prefetchNext();
+    }
+
+    /** Cancels pending extractions and forgets the items. */
+    void release() {
+        for (Item item : items) {
+            item.cancel();
+        }
+        items.clear();
+        pendingSkip = null;
+    }
+
+    private void prefetchNext() {
+        int currentIndex = getCurrentIndex();
+        if (currentIndex >= 0 && currentIndex + 1 < items.size()) {
+            resolve(items.get(currentIndex + 1));
+        }
+    }
+
+    private void resolve(Item item) {
+        if (item.source != null || item.job != null || item.failed) {
+            onResolved(item);
+            return;
+        }
+        item.job = resolver.resolve(context, item.videoId, ytFiles -> {
+            item.job = null;
+            MediaSource source = null;
+            if (ytFiles != null && audioOnly) {
+                source = MediaSources.buildAudioSource(context, ytFiles, item.videoId, maxCacheSize);
+            }
+            if (ytFiles != null && source == null) {
+                source = MediaSources.buildVodSource(context, ytFiles, item.videoId, quality, maxCacheSize);
+            }
+            if (source == null) {
+                Log.w(TAG, "Skipping unplayable queue item " + item.videoId);
+                item.failed = true;
+            } else if (items.contains(item)) {
+                item.source = source;
+                concatenatingSource.addMediaSource(windowIndexOf(item), source);
+            }
+            onResolved(item);
+        });
+    }
+
+    private void onResolved(Item item) {
+        if (item.job != null || !items.contains(item)) {
+            return;
+        }
+        if (item.failed) {
+            // Move on to the item after a failed one, whether it was skipped to or came up next.
+            int index = items.indexOf(item);
+            if (pendingSkip == item) {
+                pendingSkip = null;
+                if (index + 1 < items.size()) {
+                    skipTo(index + 1);
+                }
+            } else if (index == getCurrentIndex() + 1 && index + 1 < items.size()) {
+                resolve(items.get(index + 1));
+            }
+            return;
+        }
+        if (player == null) {
+            // Applied by setPlayer once a player is attached again.
+            return;
+        }
+        if (pendingSkip == item) {
+            pendingSkip = null;
+            if (!prepared) {
+                pooledPlayer.prepareAt(concatenatingSource, windowIndexOf(item), pendingSkipPositionMs);
+                prepared = true;
+            } else {
+                player.seekTo(windowIndexOf(item), pendingSkipPositionMs);
+            }
+            pendingSkipPositionMs = C.TIME_UNSET;
+            prefetchNext();
+        } else if (player.getPlaybackState() == Player.STATE_ENDED
+                && items.indexOf(item) == getCurrentIndex() + 1) {
+            // The player ran out of items before this one was resolved.
+            player.seekTo(windowIndexOf(item), C.TIME_UNSET);
+        }
+    }
+
+    private int windowIndexOf(Item item) {
+        int window = 0;
+        for (Item other : items) {
+            if (other == item) {
+                break;
+            }
+            if (other.source != null) {
+                window++;
+            }
+        }
+        return window;
+    }
+
+    private static final class Item {
+        final String videoId;
+        MediaSource source;
+        ResolverExecutor.Job<?> job;
+        boolean failed;
+
+        Item(String videoId) {
+            this.videoId = videoId;
+        }
+
+        void cancel() {
+            if (job != null) {
+                job.cancel();
+                job = null;
+            }
+        }
+    }
+}
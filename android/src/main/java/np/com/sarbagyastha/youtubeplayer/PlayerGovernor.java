@@ -0,0 +1,156 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounds the number of players holding an ExoPlayer, and with it decoders and network loads.
+ *
+ * <p>Players are kept in least-recently-used order. When more than the maximum are active, the
+ * least recently used invisible player is demoted first, then the least recently used one. A
+ * demoted player gives its ExoPlayer back to the {@link PlayerPool} but keeps its media source and
+ * position, and is restored when it is used again.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+final class PlayerGovernor {
+
+    private static final String TAG = "PlayerGovernor";
+
+    static final int DEFAULT_MAX_ACTIVE = 4;
+
+    /** A player managed by the governor. */
+    interface Member {
+        boolean isActive();
+
+        boolean isVisible();
+
+        boolean isPlaying();
+
+        /** Returns whether {@link #demote} released the ExoPlayer and it was not restored since. */
+        boolean isDemoted();
+
+        /** Releases the ExoPlayer of this member and keeps what is needed to restore it. */
+        void demote();
+
+        /** Acquires an ExoPlayer again and continues where {@link #demote} left off. */
+        void restore();
+
+        /** Returns memory and decoder usage of this member. */
+        Map<String, Object> getUsage();
+    }
+
+    private final LinkedHashMap<Long, Member> members = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int maxActive = DEFAULT_MAX_ACTIVE;
+
+    private long demotions;
+
+    private long restores;
+
+    void register(long id, Member member) {
+        members.put(id, member);
+        enforce(id);
+    }
+
+    void unregister(long id) {
+        members.remove(id);
+    }
+
+    /** Marks {@code id} as used, restoring it if it was demoted. */
+    void touch(long id) {
+        Member member = members.get(id);
+        if (member == null) {
+            return;
+        }
+        if (member.isDemoted()) {
+            member.restore();
+            restores++;
+        }
+        enforce(id);
+    }
+
+    /** Demotes players over the limit, preferring invisible ones. */
+    void onVisibilityChanged() {
+        enforce(-1);
+    }
+
+    void setMaxActive(int maxActive) {
+        this.maxActive = Math.max(1, maxActive);
+        enforce(-1);
+    }
+
+    /** Demotes every active player that is paused, e.g. under memory pressure. */
+    void demotePaused() {
+        for (Member member : members.values()) {
+            if (member.isActive() && !member.isPlaying()) {
+                member.demote();
+                demotions++;
+            }
+        }
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        List<Map<String, Object>> players = new ArrayList<>();
+        for (Member member : members.values()) {
+            players.add(member.getUsage());
+        }
+        stats.put("maxActive", maxActive);
+        stats.put("active", countActive());
+        stats.put("players", players);
+        stats.put("demotions", demotions);
+        stats.put("restores", restores);
+        return stats;
+    }
+
+    private void enforce(long keepId) {
+        int active = countActive();
+        while (active > maxActive) {
+            Member victim = selectVictim(keepId);
+            if (victim == null) {
+                return;
+            }
+            Log.i(TAG, "Demoting player over the limit of " + maxActive);
+            victim.demote();
+            demotions++;
+            active--;
+        }
+    }
+
+    private Member selectVictim(long keepId) {
+        Member leastRecent = null;
+        for (Map.Entry<Long, Member> entry : members.entrySet()) {
+            Member member = entry.getValue();
+            if (entry.getKey() == keepId || !member.isActive()) {
+                continue;
+            }
+            if (!member.isVisible()) {
+                return member;
+            }
+            if (leastRecent == null) {
+                leastRecent = member;
+            }
+        }
+        return leastRecent;
+    }
+
+    private int countActive() {
+        int active = 0;
+        for (Member member : members.values()) {
+            if (member.isActive()) {
+                active++;
+            }
+        }
+        return active;
+    }
+}
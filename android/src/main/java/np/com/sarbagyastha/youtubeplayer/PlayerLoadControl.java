@@ -0,0 +1,107 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+
+/**
+ * {@link LoadControl} that delegates to a {@link DefaultLoadControl} built from a {@link
+ * BufferProfile}, and can cap how far ahead the player buffers.
+ *
+ * <p>The cap is used while a player is preloaded off-screen, so it only fetches the first seconds
+ * of a video. It can be lifted at any time, e.g. when the preloaded player is handed over. The
+ * profile can only be changed while the player is stopped, as the delegate owns the allocator.
+ */
+final class PlayerLoadControl implements LoadControl {
+
+    private volatile LoadControl delegate;
+
+    private BufferProfile profile;
+
+    private volatile long loadingCapUs = C.TIME_UNSET;
+
+    PlayerLoadControl() {
+        this(BufferProfile.DEFAULT);
+    }
+
+    PlayerLoadControl(BufferProfile profile) {
+        this.profile = profile;
+        this.delegate = profile.createLoadControl();
+    }
+
+    BufferProfile getProfile() {
+        return profile;
+    }
+
+    /** Switches to {@code profile}. Must only be called while the player is stopped. */
+    void setProfile(BufferProfile profile) {
+        if (!profile.equals(this.profile)) {
+            this.profile = profile;
+            this.delegate = profile.createLoadControl();
+        }
+    }
+
+    /** Stops loading once {@code capMs} of media is buffered, or removes the cap for {@link C#TIME_UNSET}. */
+    void setLoadingCapMs(long capMs) {
+        loadingCapUs = capMs == C.TIME_UNSET ? C.TIME_UNSET : C.msToUs(capMs);
+    }
+
+    @Override
+    public void onPrepared() {
+        delegate.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(
+            Renderer[] renderers, TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+        delegate.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        delegate.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        delegate.onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return delegate.getAllocator();
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return delegate.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return delegate.retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
+        long capUs = loadingCapUs;
+        if (capUs != C.TIME_UNSET && bufferedDurationUs >= capUs) {
+            return false;
+        }
+        return delegate.shouldContinueLoading(bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(
+            long bufferedDurationUs, float playbackSpeed, boolean rebuffering) {
+        return delegate.shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering);
+    }
+}
@@ -0,0 +1,121 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of stopped {@link SimpleExoPlayer}s.
+ *
+ * <p>Creating a player spins up its playback thread, renderers, track selector and allocator.
+ * Players returned to the pool are stopped and reset instead, so the next video can reuse them.
+ * Players beyond the pool size are released.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+final class PlayerPool {
+
+    static final int DEFAULT_MAX_SIZE = 2;
+
+    private final ArrayDeque<PooledPlayer> idlePlayers = new ArrayDeque<>();
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /** Returns an idle player from the pool, or a new one if the pool is empty. */
+    PooledPlayer acquire(Context context) {
+        return acquire(context, BufferProfile.DEFAULT);
+    }
+
+    /** Returns an idle player from the pool buffering with {@code profile}, or a new one. */
+    PooledPlayer acquire(Context context, BufferProfile profile) {
+        PooledPlayer pooledPlayer = idlePlayers.poll();
+        if (pooledPlayer != null) {
+            hits++;
+            pooledPlayer.loadControl.setProfile(profile);
+            return pooledPlayer;
+        }
+        misses++;
+        DefaultTrackSelector trackSelector = new DefaultTrackSelector();
+        PlayerLoadControl loadControl = new PlayerLoadControl(profile);
+        // The shared meter gives every player, including HLS track selection, the estimate of
+        // earlier transfers and sessions instead of a default guess.
+        SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(
+                context,
+                new DefaultRenderersFactory(context),
+                trackSelector,
+                loadControl,
+                null,
+                HttpStack.getBandwidthMeter());
+        return new PooledPlayer(player, trackSelector, loadControl);
+    }
+
+    /**
+     * Stops {@code pooledPlayer} and keeps it for reuse, or releases it when the pool is full. The
+     * caller must have removed its own listeners and must not use the player afterwards.
+     */
+    void release(PooledPlayer pooledPlayer) {
+        SimpleExoPlayer player = pooledPlayer.player;
+        player.stop(true);
+        pooledPlayer.mediaSource = null;
+        if (idlePlayers.size() >= maxSize) {
+            player.release();
+            evictions++;
+            return;
+        }
+        player.clearVideoSurface();
+        player.setPlayWhenReady(false);
+        player.setRepeatMode(Player.REPEAT_MODE_OFF);
+        player.setVolume(1f);
+        player.setPlaybackParameters(null);
+        pooledPlayer.trackSelector.setParameters(new DefaultTrackSelector.ParametersBuilder().build());
+        pooledPlayer.loadControl.setLoadingCapMs(C.TIME_UNSET);
+        idlePlayers.add(pooledPlayer);
+    }
+
+    void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        while (idlePlayers.size() > this.maxSize) {
+            idlePlayers.poll().player.release();
+            evictions++;
+        }
+    }
+
+    /** Releases every idle player. */
+    void clear() {
+        for (PooledPlayer pooledPlayer : idlePlayers) {
+            pooledPlayer.player.release();
+        }
+        idlePlayers.clear();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", idlePlayers.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        long requests = hits + misses;
+        stats.put("hitRate", requests == 0 ? 0.0 : (double) hits / requests);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+}
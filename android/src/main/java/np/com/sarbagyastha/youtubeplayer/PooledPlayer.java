@@ -0,0 +1,51 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+
+/**
+ * A {@link SimpleExoPlayer} together with the components it was built with, and the media source
+ * it was last prepared with, so the source can be prepared again on another player.
+ */
+final class PooledPlayer {
+
+    final SimpleExoPlayer player;
+
+    final DefaultTrackSelector trackSelector;
+
+    final PlayerLoadControl loadControl;
+
+    MediaSource mediaSource;
+
+    PooledPlayer(
+            SimpleExoPlayer player, DefaultTrackSelector trackSelector, PlayerLoadControl loadControl) {
+        this.player = player;
+        this.trackSelector = trackSelector;
+        this.loadControl = loadControl;
+    }
+
+    void prepare(MediaSource mediaSource) {
+        prepare(mediaSource, true, true);
+    }
+
+    void prepare(MediaSource mediaSource, boolean resetPosition, boolean resetState) {
+        this.mediaSource = mediaSource;
+        player.prepare(mediaSource, resetPosition, resetState);
+    }
+
+    /**
+     * Prepares {@code mediaSource} to start at {@code positionMs} in window {@code windowIndex}.
+     * The seek is made while no source is set, so loading begins at that position instead of at
+     * the start of the stream, as it would when seeking after prepare.
+     */
+    void prepareAt(MediaSource mediaSource, int windowIndex, long positionMs) {
+        player.stop(true);
+        player.seekTo(windowIndex, positionMs);
+        prepare(mediaSource, false, true);
+    }
+}
@@ -0,0 +1,201 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.MediaSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import at.huber.youtubeExtractor.YtFile;
+
+/**
+ * Prepares players for videos that are about to be shown.
+ *
+ * <p>Each preloaded video is extracted and prepared on a paused player borrowed from the {@link
+ * PlayerPool}, which buffers only the first seconds of the stream. A later {@code create} for the
+ * same video and quality takes the warm player over and lifts the buffering cap. The number of
+ * warm players bounds memory use and the number of concurrent extractions bounds network use.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+final class Preloader {
+
+    private static final String TAG = "Preloader";
+
+    static final int DEFAULT_MAX_ENTRIES = 3;
+
+    static final int DEFAULT_MAX_CONCURRENT = 2;
+
+    static final long DEFAULT_PRELOAD_DURATION_MS = 5000;
+
+    private final PlayerPool playerPool;
+
+    private final LinkedHashMap<String, PooledPlayer> warmPlayers = new LinkedHashMap<>();
+
+    private final ArrayDeque<Request> pending = new ArrayDeque<>();
+
+    private final List<Request> inFlight = new ArrayList<>();
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+
+    private long preloadDurationMs = DEFAULT_PRELOAD_DURATION_MS;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    Preloader(PlayerPool playerPool) {
+        this.playerPool = playerPool;
+    }
+
+    void setLimits(int maxEntries, int maxConcurrent, long preloadDurationMs) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.preloadDurationMs = Math.max(0, preloadDurationMs);
+        trimToSize();
+    }
+
+    /** Queues {@code videoIds} for preloading, skipping those already warm or queued. */
+    void preload(Context context, List<String> videoIds, String quality, long maxCacheSize) {
+        for (String videoId : videoIds) {
+            String key = key(videoId, quality);
+            if (warmPlayers.containsKey(key) || isPending(key)) {
+                continue;
+            }
+            pending.add(new Request(context.getApplicationContext(), videoId, quality, maxCacheSize));
+        }
+        startPending();
+    }
+
+    /**
+     * Returns the warm player for {@code videoId} at {@code quality} and removes it from the
+     * preloader, or null if there is none. The buffering cap of a returned player is lifted.
+     */
+    PooledPlayer take(String videoId, String quality) {
+        PooledPlayer warmPlayer = warmPlayers.remove(key(videoId, quality));
+        if (warmPlayer == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        warmPlayer.loadControl.setLoadingCapMs(C.TIME_UNSET);
+        return warmPlayer;
+    }
+
+    /** Returns every warm player to the pool, and drops queued requests and running extractions. */
+    void clear() {
+        pending.clear();
+        for (Request request : inFlight) {
+            if (request.job != null) {
+                request.job.cancel();
+            }
+        }
+        inFlight.clear();
+        for (PooledPlayer warmPlayer : warmPlayers.values()) {
+            playerPool.release(warmPlayer);
+            evictions++;
+        }
+        warmPlayers.clear();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("warm", warmPlayers.size());
+        stats.put("pending", pending.size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    private void startPending() {
+        while (inFlight.size() < maxConcurrent && !pending.isEmpty()) {
+            Request request = pending.poll();
+            inFlight.add(request);
+            // Null when served from the extraction cache, which already ran the callback.
+            request.job = StreamResolver.resolve(request.context, request.videoId, ytFiles -> {
+                inFlight.remove(request);
+                MediaSource mediaSource = ytFiles == null ? null : MediaSources.buildVodSource(
+                        request.context, ytFiles, request.videoId, request.quality, request.maxCacheSize);
+                if (mediaSource == null) {
+                    Log.w(TAG, "Unable to preload " + request.videoId);
+                } else {
+                    prepare(request, mediaSource);
+                }
+                startPending();
+            });
+        }
+    }
+
+    private void prepare(Request request, MediaSource mediaSource) {
+        if (maxEntries == 0) {
+            return;
+        }
+        PooledPlayer warmPlayer = playerPool.acquire(request.context);
+        warmPlayer.loadControl.setLoadingCapMs(preloadDurationMs);
+        warmPlayer.player.setPlayWhenReady(false);
+        warmPlayer.prepare(mediaSource);
+        PooledPlayer previous = warmPlayers.put(key(request.videoId, request.quality), warmPlayer);
+        if (previous != null) {
+            playerPool.release(previous);
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<PooledPlayer> iterator = warmPlayers.values().iterator();
+        while (warmPlayers.size() > maxEntries && iterator.hasNext()) {
+            playerPool.release(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private boolean isPending(String key) {
+        for (Request request : pending) {
+            if (key(request.videoId, request.quality).equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String key(String videoId, String quality) {
+        return videoId + "@" + quality;
+    }
+
+    private static final class Request {
+        final Context context;
+        final String videoId;
+        final String quality;
+        final long maxCacheSize;
+        ResolverExecutor.Job<SparseArray<YtFile>> job;
+
+        Request(Context context, String videoId, String quality, long maxCacheSize) {
+            this.context = context;
+            this.videoId = videoId;
+            this.quality = quality;
+            this.maxCacheSize = maxCacheSize;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package np.com.sarbagyastha.youtubeplayer;
 
 import io.flutter.plugin.common.EventChannel;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Map;
 
 /**
  * And implementation of {@link EventChannel.EventSink} which can wrap an underlying sink.
@@ -9,50 +13,112 @@ import java.util.ArrayList;
  * <p>It delivers messages immediately when downstream is available, but it queues messages before
  * the delegate event sink is set with setDelegate.
  *
- * <p>This class is not thread-safe. All calls must be done on the same thread or synchronized
- * externally.
+ * <p>The queue is bounded. A queued progress, buffering or live latency update is replaced in place
+ * by a newer one of the same kind, as only the latest state matters. When the queue is full, the
+ * oldest of those updates is dropped first, then the oldest event.
+ *
+ * <p>This class is thread-safe.
  */
 final class QueuingEventSink implements EventChannel.EventSink {
+  static final int DEFAULT_CAPACITY = 64;
+
+  private final int capacity;
+  private final LinkedList<Object> eventQueue = new LinkedList<>();
   private EventChannel.EventSink delegate;
-  private ArrayList<Object> eventQueue = new ArrayList<>();
   private boolean done = false;
+  private long dropped;
+
+  QueuingEventSink() {
+    this(DEFAULT_CAPACITY);
+  }
 
-  public void setDelegate(EventChannel.EventSink delegate) {
+  QueuingEventSink(int capacity) {
+    this.capacity = capacity;
+  }
+
+  public synchronized void setDelegate(EventChannel.EventSink delegate) {
     this.delegate = delegate;
     maybeFlush();
   }
 
   @Override
-  public void endOfStream() {
+  public synchronized void endOfStream() {
     enqueue(new EndOfStreamEvent());
     maybeFlush();
     done = true;
   }
 
   @Override
-  public void error(String code, String message, Object details) {
+  public synchronized void error(String code, String message, Object details) {
     enqueue(new ErrorEvent(code, message, details));
     maybeFlush();
   }
 
   @Override
-  public void success(Object event) {
+  public synchronized void success(Object event) {
+    if (delegate != null && eventQueue.isEmpty()) {
+      delegate.success(event);
+      return;
+    }
     enqueue(event);
     maybeFlush();
   }
 
+  /**
+   * Sends an event whose map the caller reuses for the next event of its kind. The delegate encodes
+   * the map right away, so it is only copied when it has to be queued.
+   */
+  public synchronized void successReusable(Map<String, Object> event) {
+    if (delegate != null && eventQueue.isEmpty()) {
+      delegate.success(event);
+      return;
+    }
+    enqueue(copy(event));
+    maybeFlush();
+  }
+
+  synchronized long getDroppedCount() {
+    return dropped;
+  }
+
   private void enqueue(Object event) {
     if (done) {
       return;
     }
+    String type = typeOf(event);
+    if (isCoalescable(type)) {
+      ListIterator<Object> iterator = eventQueue.listIterator();
+      while (iterator.hasNext()) {
+        if (type.equals(typeOf(iterator.next()))) {
+          iterator.set(event);
+          return;
+        }
+      }
+    }
+    if (eventQueue.size() >= capacity) {
+      dropOldest();
+    }
     eventQueue.add(event);
   }
 
+  private void dropOldest() {
+    dropped++;
+    Iterator<Object> iterator = eventQueue.iterator();
+    while (iterator.hasNext()) {
+      if (isCoalescable(typeOf(iterator.next()))) {
+        iterator.remove();
+        return;
+      }
+    }
+    eventQueue.poll();
+  }
+
   private void maybeFlush() {
     if (delegate == null) {
       return;
     }
-    for (Object event : eventQueue) {
+    Object event;
+    while ((event = eventQueue.poll()) != null) {
       if (event instanceof EndOfStreamEvent) {
         delegate.endOfStream();
       } else if (event instanceof ErrorEvent) {
@@ -62,7 +128,30 @@ final class QueuingEventSink implements EventChannel.EventSink {
         delegate.success(event);
       }
     }
-    eventQueue.clear();
+  }
+
+  private static String typeOf(Object event) {
+    if (event instanceof Map) {
+      Object type = ((Map<?, ?>) event).get("event");
+      return type instanceof String ? (String) type : null;
+    }
+    return null;
+  }
+
+  private static boolean isCoalescable(String type) {
+    return "progress".equals(type)
+        || "bufferingUpdate".equals(type)
+        || "liveLatency".equals(type);
+  }
+
+  private static Map<String, Object> copy(Map<String, Object> event) {
+    Map<String, Object> copy = new HashMap<>(event);
+    for (Map.Entry<String, Object> entry : copy.entrySet()) {
+      if (entry.getValue() instanceof long[]) {
+        entry.setValue(((long[]) entry.getValue()).clone());
+      }
+    }
+    return copy;
   }
 
   private static class EndOfStreamEvent {}
@@ -0,0 +1,254 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor for stream resolution, replacing the global serial {@code AsyncTask} executor.
+ *
+ * <p>Each submitted {@link Job} has a timeout and can be cancelled, e.g. when the player is
+ * disposed before its page fetch finishes. Callbacks are always delivered on the main thread, and
+ * never after a job was cancelled. Work that runs elsewhere can still be tracked as a job, so it
+ * gets the same timeout, cancellation and metrics.
+ */
+final class ResolverExecutor {
+
+    private static final String TAG = "ResolverExecutor";
+
+    static final int DEFAULT_POOL_SIZE = 3;
+
+    static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+    static final long DEFAULT_TIMEOUT_MS = 20000;
+
+    interface Task<T> {
+        /** Runs on an executor thread. Long blocking calls should register a cancel hook. */
+        T run(Job<T> job) throws Exception;
+    }
+
+    interface Callback<T> {
+        /** Called once on the main thread with either a result or an error. */
+        void onComplete(T result, Exception error);
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong cancellations = new AtomicLong();
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    private volatile long timeoutMs = DEFAULT_TIMEOUT_MS;
+
+    ResolverExecutor() {
+        executor = new ThreadPoolExecutor(
+                DEFAULT_POOL_SIZE,
+                DEFAULT_POOL_SIZE,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(DEFAULT_QUEUE_CAPACITY),
+                new ResolverThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    void setPoolSize(int poolSize) {
+        int size = Math.max(1, poolSize);
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+    }
+
+    /** Runs {@code task} on the executor. */
+    <T> Job<T> submit(Task<T> task, Callback<T> callback) {
+        Job<T> job = track(callback);
+        try {
+            job.future = executor.submit(() -> {
+                if (job.isFinished()) {
+                    return;
+                }
+                try {
+                    job.complete(task.run(job));
+                } catch (Exception e) {
+                    job.fail(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.incrementAndGet();
+            Log.w(TAG, "Resolver queue is full");
+            job.fail(e);
+        }
+        return job;
+    }
+
+    /** Returns a job for work running elsewhere, which the caller completes or fails. */
+    <T> Job<T> track(Callback<T> callback) {
+        Job<T> job = new Job<>(callback);
+        pending.incrementAndGet();
+        mainHandler.postDelayed(job.timeoutRunnable, timeoutMs);
+        return job;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("pending", pending.get());
+        stats.put("poolSize", executor.getMaximumPoolSize());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("cancellations", cancellations.get());
+        stats.put("rejections", rejections.get());
+        return stats;
+    }
+
+    final class Job<T> {
+        private final Callback<T> callback;
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private volatile boolean cancelled;
+
+        private final Runnable timeoutRunnable = this::timeout;
+
+        private volatile Runnable cancelHook;
+
+        private volatile Future<?> future;
+
+        private Job(Callback<T> callback) {
+            this.callback = callback;
+        }
+
+        /** Sets an action run on cancellation or timeout, e.g. cancelling an HTTP call. */
+        void setCancelHook(Runnable cancelHook) {
+            this.cancelHook = cancelHook;
+            if (finished.get()) {
+                cancelHook.run();
+            }
+        }
+
+        boolean isFinished() {
+            return finished.get();
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Cancels the job. Its callback is not called, even if a result is already on its way. */
+        void cancel() {
+            cancelled = true;
+            if (finish()) {
+                cancellations.incrementAndGet();
+                abort();
+            }
+        }
+
+        void complete(T result) {
+            if (finish()) {
+                completed.incrementAndGet();
+                deliver(result, null);
+            }
+        }
+
+        void fail(Exception error) {
+            if (finish()) {
+                failed.incrementAndGet();
+                deliver(null, error);
+            }
+        }
+
+        private void timeout() {
+            if (finish()) {
+                timeouts.incrementAndGet();
+                abort();
+                deliver(null, new TimeoutException("Stream resolution timed out after " + timeoutMs + " ms"));
+            }
+        }
+
+        private boolean finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            pending.decrementAndGet();
+            mainHandler.removeCallbacks(timeoutRunnable);
+            return true;
+        }
+
+        private void abort() {
+            Runnable hook = cancelHook;
+            if (hook != null) {
+                hook.run();
+            }
+            Future<?> runningFuture = future;
+            if (runningFuture != null) {
+                runningFuture.cancel(true);
+            }
+        }
+
+        private void deliver(T result, Exception error) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                callback.onComplete(result, error);
+            } else {
+                mainHandler.post(() -> {
+                    // The job may have been cancelled after the result was posted.
+                    if (!cancelled) {
+                        callback.onComplete(result, error);
+                    }
+                });
+            }
+        }
+    }
+
+    private static final class ResolverThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "YoutubeResolver #" + count.incrementAndGet());
+        }
+    }
+}
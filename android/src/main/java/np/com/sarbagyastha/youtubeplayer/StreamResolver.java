@@ -0,0 +1,79 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseArray;
+
+import at.huber.youtubeExtractor.VideoMeta;
+import at.huber.youtubeExtractor.YouTubeExtractor;
+import at.huber.youtubeExtractor.YtFile;
+
+/**
+ * Resolves the stream links of a video ID, going through the shared {@link ExtractionCache}, and
+ * the HLS manifest of live videos. Every resolution runs as a {@link ResolverExecutor.Job}.
+ */
+final class StreamResolver {
+
+    private static final String TAG = "StreamResolver";
+
+    static final ExtractionCache extractionCache = new ExtractionCache();
+
+    static final ResolverExecutor resolverExecutor = new ResolverExecutor();
+
+    interface Callback {
+        /** Called on the main thread with the extracted streams, or null if extraction failed. */
+        void onResolved(SparseArray<YtFile> ytFiles);
+    }
+
+    private StreamResolver() {}
+
+    /**
+     * Resolves the streams of {@code videoId}. Returns null when they were served from the cache
+     * and {@code callback} was already called, or the job to cancel otherwise.
+     *
+     * <p>The extractor library starts its own {@code AsyncTask} and offers no way to run it on
+     * another executor, so the extraction is tracked as a job for its timeout and cancellation.
+     */
+    @SuppressLint("StaticFieldLeak")
+    static ResolverExecutor.Job<SparseArray<YtFile>> resolve(
+            Context context, String videoId, Callback callback) {
+        ExtractionCache.Entry cached = extractionCache.get(videoId);
+        if (cached != null) {
+            Log.i(TAG, "Extraction cache hit: " + videoId);
+            callback.onResolved(cached.ytFiles);
+            return null;
+        }
+        ResolverExecutor.Job<SparseArray<YtFile>> job = resolverExecutor.track((ytFiles, error) -> {
+            if (error != null) {
+                Log.w(TAG, "Unable to extract " + videoId, error);
+            }
+            callback.onResolved(ytFiles);
+        });
+        YouTubeExtractor extractor = new YouTubeExtractor(context) {
+            @Override
+            public void onExtractionComplete(SparseArray<YtFile> ytFiles, VideoMeta vMeta) {
+                extractionCache.put(videoId, ytFiles, vMeta);
+                job.complete(ytFiles);
+            }
+        };
+        job.setCancelHook(() -> extractor.cancel(true));
+        extractor.extract("https://www.youtube.com/watch?v=" + videoId, true, true);
+        return job;
+    }
+
+    /**
+     * Resolves the HLS manifest URL of live video {@code videoId} on the resolver executor. The
+     * callback receives null if the video is not live.
+     */
+    static ResolverExecutor.Job<String> resolveLive(
+            String videoId, ResolverExecutor.Callback<String> callback) {
+        long timeoutMs = resolverExecutor.getTimeoutMs();
+        return resolverExecutor.submit(
+                job -> LiveManifestProbe.fetchManifestUrl(videoId, job, timeoutMs), callback);
+    }
+}
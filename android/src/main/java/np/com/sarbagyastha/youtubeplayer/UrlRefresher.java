@@ -0,0 +1,101 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides when a player resolves its signed stream or manifest URLs again.
+ *
+ * <p>googlevideo URLs carry an {@code expire} time and are refused with 403 or 410 afterwards,
+ * which ends long or looping sessions. Such errors, and any HTTP error once the played URL is past
+ * its expiry, are recovered by resolving the video again. At most {@link #MAX_REFRESHES} refreshes
+ * are started per {@link #WINDOW_MS}, so a URL that keeps failing still surfaces as an error.
+ */
+final class UrlRefresher {
+
+    private static final int MAX_REFRESHES = 3;
+
+    private static final long WINDOW_MS = 60 * 1000;
+
+    private long windowStartMs;
+
+    private int windowRefreshes;
+
+    private boolean refreshing;
+
+    private int refreshes;
+
+    private int failures;
+
+    /** Returns whether {@code error} means the signed URL {@code url} is no longer accepted. */
+    static boolean isExpiryError(ExoPlaybackException error, String url) {
+        if (error.type != ExoPlaybackException.TYPE_SOURCE) {
+            return false;
+        }
+        for (Throwable cause = error.getSourceException(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpDataSource.InvalidResponseCodeException) {
+                int responseCode = ((HttpDataSource.InvalidResponseCodeException) cause).responseCode;
+                if (responseCode == 403 || responseCode == 410) {
+                    return true;
+                }
+            }
+            if (cause instanceof HttpDataSource.HttpDataSourceException && isExpired(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isExpired(String url) {
+        long expireSeconds = ExtractionCache.parseExpire(url);
+        return expireSeconds > 0 && expireSeconds * 1000 <= System.currentTimeMillis();
+    }
+
+    /** Returns true and starts a refresh unless one is running or too many ran recently. */
+    boolean tryStart() {
+        if (refreshing) {
+            return false;
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        if (nowMs - windowStartMs > WINDOW_MS) {
+            windowStartMs = nowMs;
+            windowRefreshes = 0;
+        }
+        if (windowRefreshes >= MAX_REFRESHES) {
+            return false;
+        }
+        windowRefreshes++;
+        refreshing = true;
+        return true;
+    }
+
+    void onRefreshed() {
+        refreshing = false;
+        refreshes++;
+    }
+
+    void onFailed() {
+        refreshing = false;
+        failures++;
+    }
+
+    int getRefreshCount() {
+        return refreshes;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("urlRefreshes", refreshes);
+        stats.put("urlRefreshFailures", failures);
+        return stats;
+    }
+}
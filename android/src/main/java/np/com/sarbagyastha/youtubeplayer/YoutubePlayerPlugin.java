@@ -37,12 +37,14 @@ package np.com.sarbagyastha.youtubeplayer;
 import static com.google.android.exoplayer2.Player.REPEAT_MODE_ALL;
 import static com.google.android.exoplayer2.Player.REPEAT_MODE_OFF;
 
-import android.annotation.SuppressLint;
+import android.app.Application;
 import android.content.Context;
 import android.media.AudioManager;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 import android.util.SparseArray;
@@ -51,26 +53,17 @@ import android.view.WindowManager;
 
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlaybackException;
-import com.google.android.exoplayer2.ExoPlayerFactory;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.Player.*;
 import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.audio.AudioAttributes;
-import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
-import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
-import com.google.android.exoplayer2.source.hls.HlsMediaSource;
-import com.google.android.exoplayer2.source.MergingMediaSource;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
-import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.VideoListener;
 
-import at.huber.youtubeExtractor.VideoMeta;
-import at.huber.youtubeExtractor.YouTubeExtractor;
 import at.huber.youtubeExtractor.YtFile;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
@@ -82,15 +75,6 @@ import io.flutter.plugin.common.PluginRegistry.Registrar;
 import io.flutter.view.FlutterNativeView;
 import io.flutter.view.TextureRegistry;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -100,327 +84,284 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
 
     private static final String TAG = "YoutubePlayerPlugin";
 
-    private static class YoutubePlayer {
+    private static final ExtractionCache extractionCache = StreamResolver.extractionCache;
+
+    private static final PlayerPool playerPool = new PlayerPool();
+
+    private static final Preloader preloader = new Preloader(playerPool);
+
+    private static final PlayerGovernor governor = new PlayerGovernor();
+
+    private static class YoutubePlayer implements PlayerGovernor.Member {
+
+        private static final long DEFAULT_POSITION_UPDATE_INTERVAL_MS = 500;
+
+        private static final long TRIMMED_BUFFER_MS = 10000;
+
+        private PooledPlayer pooledPlayer;
 
         private SimpleExoPlayer exoPlayer;
 
+        private Player.EventListener playerListener;
+
+        private VideoListener videoListener;
+
+        private ResolverExecutor.Job<?> resolveJob;
+
         private Surface surface;
 
+        private final long id;
+
+        /** The texture rendered to, or null for a player created audio-only. */
         private final TextureRegistry.SurfaceTextureEntry textureEntry;
 
-        private QueuingEventSink eventSink = new QueuingEventSink();
+        private boolean audioOnly;
+
+        private final QueuingEventSink eventSink = new QueuingEventSink();
+
+        // Progress and buffered range are sent several times a second, so their payloads are
+        // reused. The event sink copies them only when it has to queue them.
+        private final Map<String, Object> progressEvent = new HashMap<>(4);
+
+        private final Map<String, Object> bufferingUpdateEvent = new HashMap<>(4);
+
+        private final long[] bufferedRange = new long[2];
 
         private final EventChannel eventChannel;
 
         private boolean isInitialized = false;
 
+        private boolean isDisposed = false;
+
+        private final long maxCacheSize;
+
+        private final BufferProfile bufferProfile;
+
+        private final boolean adaptive;
+
+        private final long liveTargetOffsetMs;
+
+        private final long startPositionMs;
+
+        private LiveLatencyController liveLatency;
+
+        private final Runnable liveLatencyUpdater = this::updateLiveLatency;
+
+        private Context context;
+
+        private String videoId;
+
+        private SparseArray<YtFile> ytFiles;
+
+        private YtFile currentVideo;
+
+        private AdaptiveQuality adaptiveQuality;
+
+        private boolean isLive;
+
+        private String manifestUrl;
+
+        private final UrlRefresher urlRefresher = new UrlRefresher();
+
+        private String quality;
+
+        /** The video height live track selection is capped to by setQuality. */
+        private int liveMaxVideoHeight = Integer.MAX_VALUE;
+
+        private PlaybackQueue queue;
+
+        private int lastQueueIndex = -1;
+
+        private long lastQueueDurationMs = C.TIME_UNSET;
+
+        private boolean isVisible = true;
+
+        private boolean isTrimmed = false;
+
+        private int repeatMode = REPEAT_MODE_OFF;
+
+        private float volume = 1f;
+
+        private MediaSource demotedSource;
+
+        private int demotedWindowIndex;
+
+        private long demotedPositionMs;
+
+        private long switchStartMs = C.TIME_UNSET;
+
+        private String switchReason;
+
+        private final Runnable adaptiveUpdater = this::updateAdaptiveQuality;
+
+        private final Handler progressHandler = new Handler(Looper.getMainLooper());
+
+        private final Runnable progressUpdater = this::updateProgress;
+
+        private long positionUpdateIntervalMs = DEFAULT_POSITION_UPDATE_INTERVAL_MS;
+
+        private long lastSentPosition = C.TIME_UNSET;
+
+        private long lastSentBufferedPosition = C.TIME_UNSET;
+
+        private int lastSentState = Player.STATE_IDLE;
+
+        private boolean lastSentPlayWhenReady;
+
+        private boolean isBuffering = false;
+
+        /** Whether the current buffering counts as a rebuffer rather than a seek or switch. */
+        private boolean isRebuffering = false;
+
+        /** Set by seeks and re-prepares, whose buffering is expected, until the player is ready. */
+        private boolean expectBuffering = false;
+
+        private long bufferingStartMs;
+
+        private final PlaybackMetrics metrics = new PlaybackMetrics();
+
+        private final Runnable metricsUpdater = this::sendMetrics;
+
+        private long metricsIntervalMs;
+
+        private Runnable onCreateFailed;
+
         YoutubePlayer(
                 Context context,
                 EventChannel eventChannel,
+                long id,
                 TextureRegistry.SurfaceTextureEntry textureEntry,
-                String dataSource,
-                Result result) {
+                CreateArgs args) {
             this.eventChannel = eventChannel;
+            this.id = id;
             this.textureEntry = textureEntry;
+            this.audioOnly = args.audioOnly;
+            this.maxCacheSize = args.maxCacheSize;
+            this.bufferProfile = args.bufferProfile;
+            this.adaptive = args.adaptive;
+            this.liveTargetOffsetMs = args.liveTargetOffsetMs;
+            this.startPositionMs = args.startPositionMs;
+            this.context = context.getApplicationContext();
+        }
 
-            String[] splittedDataSource = dataSource.split("sarbagya");
-            if(splittedDataSource[2].equals("true")){
-                new PlayLiveStreamVideo("https://www.youtube.com/watch?v=" + splittedDataSource[0],result,context).execute();
-            }
-            else loadStreamLinks(context, "https://www.youtube.com/watch?v=" + splittedDataSource[0], splittedDataSource[1], result);
-        }
-
-        @SuppressLint("StaticFieldLeak")
-        private void loadStreamLinks(Context context, String url, String quality, Result result){
-            TrackSelector trackSelector = new DefaultTrackSelector();
-            exoPlayer = ExoPlayerFactory.newSimpleInstance(context, trackSelector);
-            new YouTubeExtractor(context) {
-                @Override
-                public void onExtractionComplete(SparseArray<YtFile> ytFiles, VideoMeta vMeta) {
-                    String a,v;
-                    if (ytFiles != null) {
-                        switch (quality) {
-                            case "144p":
-                                if(ytFiles.indexOfKey(278)>0){
-                                    Log.i(TAG,"Quality: 144p WEBM");
-                                    v = ytFiles.get(278).getUrl();
-                                }else{
-                                    Log.i(TAG,"Quality: 144p MP4");
-                                    v = ytFiles.get(160).getUrl();
-                                }
-                                break;
-                            case "240p":
-                                if(ytFiles.indexOfKey(242)>0){
-                                    Log.i(TAG,"Quality: 240p WEBM");
-                                    v = ytFiles.get(242).getUrl();
-                                }else if(ytFiles.indexOfKey(133)>0){
-                                    Log.i(TAG,"Quality: 240p MP4");
-                                    v = ytFiles.get(133).getUrl();
-                                }else if(ytFiles.indexOfKey(278)>0){
-                                    Log.i(TAG,"Quality: 144p WEBM [Adapted]");
-                                    v = ytFiles.get(278).getUrl();
-                                }else{
-                                    Log.i(TAG,"Quality: 144p MP4 [Adapted]");
-                                    v = ytFiles.get(160).getUrl();
-                                }
-                                break;
-                            case "360p":
-                                if(ytFiles.indexOfKey(243)>0){
-                                    Log.i(TAG,"Quality: 360p WEBM");
-                                    v = ytFiles.get(243).getUrl();
-                                }else if(ytFiles.indexOfKey(134)>0){
-                                    Log.i(TAG,"Quality: 360p MP4");
-                                    v = ytFiles.get(134).getUrl();
-                                }else if(ytFiles.indexOfKey(242)>0){
-                                    Log.i(TAG,"Quality: 240p WEBM [Adapted]");
-                                    v = ytFiles.get(242).getUrl();
-                                }else if(ytFiles.indexOfKey(133)>0){
-                                    Log.i(TAG,"Quality: 240p MP4 [Adapted]");
-                                    v = ytFiles.get(133).getUrl();
-                                }else if(ytFiles.indexOfKey(278)>0){
-                                    Log.i(TAG,"Quality: 144p WEBM [Adapted]");
-                                    v = ytFiles.get(278).getUrl();
-                                }else{
-                                    Log.i(TAG,"Quality: 144p MP4 [Adapted]");
-                                    v = ytFiles.get(160).getUrl();
-                                }
-                                break;
-                            case "480p":
-                                if(ytFiles.indexOfKey(244)>0){
-                                    Log.i(TAG,"Quality: 480p WEBM");
-                                    v = ytFiles.get(244).getUrl();
-                                }else if(ytFiles.indexOfKey(135)>0){
-                                    Log.i(TAG,"Quality: 480p MP4");
-                                    v = ytFiles.get(135).getUrl();
-                                }else if(ytFiles.indexOfKey(243)>0){
-                                    Log.i(TAG,"Quality: 360p WEBM [Adapted]");
-                                    v = ytFiles.get(243).getUrl();
-                                }else if(ytFiles.indexOfKey(134)>0){
-                                    Log.i(TAG,"Quality: 360p MP4 [Adapted]");
-                                    v = ytFiles.get(134).getUrl();
-                                }else if(ytFiles.indexOfKey(242)>0){
-                                    Log.i(TAG,"Quality: 240p WEBM [Adapted]");
-                                    v = ytFiles.get(242).getUrl();
-                                }else if(ytFiles.indexOfKey(133)>0){
-                                    Log.i(TAG,"Quality: 240p MP4 [Adapted]");
-                                    v = ytFiles.get(133).getUrl();
-                                }else if(ytFiles.indexOfKey(278)>0){
-                                    Log.i(TAG,"Quality: 144p WEBM [Adapted]");
-                                    v = ytFiles.get(278).getUrl();
-                                }else{
-                                    Log.i(TAG,"Quality: 144p MP4 [Adapted]");
-                                    v = ytFiles.get(160).getUrl();
-                                }
-                                break;
-                            case "720p":
-                                if(ytFiles.indexOfKey(247)>0){
-                                    Log.i(TAG,"Quality: 720p WEBM");
-                                    v = ytFiles.get(247).getUrl();
-                                }else if(ytFiles.indexOfKey(136)>0){
-                                    Log.i(TAG,"Quality: 720p MP4");
-                                    v = ytFiles.get(136).getUrl();
-                                }else if(ytFiles.indexOfKey(244)>0){
-                                    Log.i(TAG,"Quality: 480p WEBM [Adapted]");
-                                    v = ytFiles.get(244).getUrl();
-                                }else if(ytFiles.indexOfKey(135)>0){
-                                    Log.i(TAG,"Quality: 480p MP4 [Adapted]");
-                                    v = ytFiles.get(135).getUrl();
-                                }else if(ytFiles.indexOfKey(243)>0){
-                                    Log.i(TAG,"Quality: 360p WEBM [Adapted]");
-                                    v = ytFiles.get(243).getUrl();
-                                }else if(ytFiles.indexOfKey(134)>0){
-                                    Log.i(TAG,"Quality: 360p MP4 [Adapted]");
-                                    v = ytFiles.get(134).getUrl();
-                                }else if(ytFiles.indexOfKey(242)>0){
-                                    Log.i(TAG,"Quality: 240p WEBM [Adapted]");
-                                    v = ytFiles.get(242).getUrl();
-                                }else if(ytFiles.indexOfKey(133)>0){
-                                    Log.i(TAG,"Quality: 240p MP4 [Adapted]");
-                                    v = ytFiles.get(133).getUrl();
-                                }else if(ytFiles.indexOfKey(278)>0){
-                                    Log.i(TAG,"Quality: 144p WEBM [Adapted]");
-                                    v = ytFiles.get(278).getUrl();
-                                }else if(ytFiles.indexOfKey(160)>0){
-                                    Log.i(TAG,"Quality: 144p MP4 [Adapted]");
-                                    v = ytFiles.get(160).getUrl();
-                                }else {
-                                    Log.i(TAG,"Quality: 360p MP4 [Adapted]");
-                                    v = ytFiles.get(18).getUrl();
-                                }
-                                break;
-                            case "1080p":
-                                if(ytFiles.indexOfKey(248)>0){
-                                    Log.i(TAG,"Quality: 1080p WEBM");
-                                    v = ytFiles.get(248).getUrl();
-                                }else if(ytFiles.indexOfKey(137)>0){
-                                    Log.i(TAG,"Quality: 1080p MP4");
-                                    v = ytFiles.get(137).getUrl();
-                                }else if(ytFiles.indexOfKey(247)>0){
-                                    Log.i(TAG,"Quality: 720p WEBM [Adapted");
-                                    v = ytFiles.get(247).getUrl();
-                                }else if(ytFiles.indexOfKey(136)>0){
-                                    Log.i(TAG,"Quality: 720p MP4 [Adapted]");
-                                    v = ytFiles.get(136).getUrl();
-                                }else if(ytFiles.indexOfKey(244)>0){
-                                    Log.i(TAG,"Quality: 480p WEBM [Adapted]");
-                                    v = ytFiles.get(244).getUrl();
-                                }else if(ytFiles.indexOfKey(135)>0){
-                                    Log.i(TAG,"Quality: 480p MP4 [Adapted]");
-                                    v = ytFiles.get(135).getUrl();
-                                }else if(ytFiles.indexOfKey(243)>0){
-                                    Log.i(TAG,"Quality: 360p WEBM [Adapted]");
-                                    v = ytFiles.get(243).getUrl();
-                                }else if(ytFiles.indexOfKey(134)>0){
-                                    Log.i(TAG,"Quality: 360p MP4 [Adapted]");
-                                    v = ytFiles.get(134).getUrl();
-                                }else if(ytFiles.indexOfKey(242)>0){
-                                    Log.i(TAG,"Quality: 240p WEBM [Adapted]");
-                                    v = ytFiles.get(242).getUrl();
-                                }else if(ytFiles.indexOfKey(133)>0){
-                                    Log.i(TAG,"Quality: 240p MP4 [Adapted]");
-                                    v = ytFiles.get(133).getUrl();
-                                }else if(ytFiles.indexOfKey(278)>0){
-                                    Log.i(TAG,"Quality: 144p WEBM [Adapted]");
-                                    v = ytFiles.get(278).getUrl();
-                                }else{
-                                    Log.i(TAG,"Quality: 144p MP4 [Adapted]");
-                                    v = ytFiles.get(160).getUrl();
-                                }
-                                break;
-                            default:
-                                v = ytFiles.get(247).getUrl(); break;
-                        }
-                        a = ytFiles.get(140).getUrl();
-
-
-                        DataSource.Factory dataSourceFactory;
-                        dataSourceFactory =
-                                new DefaultHttpDataSourceFactory(
-                                        "ExoPlayer",
-                                        null,
-                                        DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS,
-                                        DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS,
-                                        true);
-
-
-                        Uri vUri = Uri.parse(v);
-                        Uri aUri = Uri.parse(a);
-                        MediaSource mediaSource = buildMediaSource(vUri, aUri, dataSourceFactory);
-                        exoPlayer.prepare(mediaSource);
-
-                        setupYoutubePlayer(eventChannel, textureEntry, result);
-                    }
-                }
-            }.extract(url, true, true);
-        }
-
-
-        private MediaSource buildMediaSource(
-                Uri vuri,Uri auri, DataSource.Factory mediaDataSourceFactory) {
-            int type = Util.inferContentType(vuri.getLastPathSegment());
-            if (type == C.TYPE_HLS) {
-                Log.i(TAG, "Media Type: HLS");
-                return new HlsMediaSource.Factory(mediaDataSourceFactory).createMediaSource(vuri);
-            } else if (type == C.TYPE_OTHER) {
-                Log.i(TAG, "Media Type: GENERAL");
-                ExtractorMediaSource vESource = new ExtractorMediaSource.Factory(mediaDataSourceFactory)
-                        .setExtractorsFactory(new DefaultExtractorsFactory())
-                        .createMediaSource(vuri);
-                ExtractorMediaSource aESource = new ExtractorMediaSource.Factory(mediaDataSourceFactory)
-                        .setExtractorsFactory(new DefaultExtractorsFactory())
-                        .createMediaSource(auri);
-                return new MergingMediaSource(vESource, aESource);
+        /**
+         * Resolves and prepares the video of {@code args}, then replies with the texture id. If that
+         * fails, the player is disposed and {@code onCreateFailed} is run before the error reply,
+         * as Dart never learns the id to dispose it.
+         */
+        void load(Context context, CreateArgs args, Result result, Runnable onCreateFailed) {
+            this.onCreateFailed = onCreateFailed;
+            if (args.live) {
+                loadLiveStream(context, args.videoId, result);
             } else {
-                throw new IllegalStateException("Unsupported type: " + type);
+                loadStreamLinks(context, args.videoId, args.quality, result);
             }
         }
 
-        @SuppressLint("StaticFieldLeak")
-        public class PlayLiveStreamVideo extends AsyncTask<Void , Void ,Void> {
-            String server_response;
-            String youtubeLink;
-            Result result;
-            Context context;
+        private void failCreate(Result result, String message) {
+            dispose();
+            onCreateFailed.run();
+            result.error("VideoError", message, null);
+        }
 
-            PlayLiveStreamVideo(String youtubeLink, Result result, Context context){
-                this.youtubeLink = youtubeLink;
-                this.result = result;
-                this.context = context;
+        private void loadStreamLinks(Context context, String videoId, String quality, Result result){
+            this.videoId = videoId;
+            this.quality = quality;
+            // Preloaded players were prepared with video, which audio-only playback skips.
+            PooledPlayer warmPlayer = audioOnly ? null : preloader.take(videoId, quality);
+            if (warmPlayer != null && !warmPlayer.loadControl.getProfile().equals(bufferProfile)) {
+                // The buffer profile of a prepared player cannot change, so the warm player
+                // is only used when it already buffers as requested.
+                playerPool.release(warmPlayer);
+                warmPlayer = null;
             }
-
-            @Override
-            protected Void doInBackground(Void... params) {
-                URL url;
-                HttpURLConnection urlConnection;
-                try {
-                    url = new URL(youtubeLink);
-                    urlConnection = (HttpURLConnection) url.openConnection();
-                    int responseCode = urlConnection.getResponseCode();
-                    if(responseCode == HttpURLConnection.HTTP_OK){
-                        server_response = readStream(urlConnection.getInputStream());
-                        if(server_response.contains("hlsManifestUrl")) {
-                            String rawUrl = server_response.split("hlsManifestUrl")[1];
-                            rawUrl = rawUrl.split("playbackTracking")[0];
-                            rawUrl = rawUrl.replace("\"","");
-                            rawUrl = rawUrl.replace("\\","");
-                            rawUrl = rawUrl.replace("}","");
-                            rawUrl = rawUrl.replace(",","");
-                            server_response = rawUrl.substring(1);
-                        }else{
-                            Log.i(TAG,"This is not a Live Video. Set isLive = false");
-                        }
+            if (warmPlayer != null) {
+                Log.i(TAG, "Using preloaded player: " + videoId);
+                pooledPlayer = warmPlayer;
+                exoPlayer = warmPlayer.player;
+                // The preloader just extracted the streams, so they are normally still cached.
+                ExtractionCache.Entry cached = extractionCache.get(videoId);
+                if (cached != null) {
+                    ytFiles = cached.ytFiles;
+                    currentVideo = ItagLadder.resolveStartupVideo(ytFiles, quality);
+                    if (adaptive && currentVideo != null) {
+                        adaptiveQuality = new AdaptiveQuality(ytFiles, quality, HttpStack.getBandwidthMeter());
+                        adaptiveQuality.startAt(currentVideo);
                     }
-                } catch (MalformedURLException e) {
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    e.printStackTrace();
                 }
-                return null;
+                if (startPositionMs > 0) {
+                    // The warm player already buffered the start, so it can only seek.
+                    exoPlayer.seekTo(startPositionMs);
+                }
+                metrics.markWarmStart(exoPlayer.getPlaybackState() == Player.STATE_READY);
+                setupYoutubePlayer(eventChannel, textureEntry, result);
+                if (exoPlayer.getPlaybackState() == Player.STATE_READY) {
+                    isInitialized = true;
+                    sendInitialized();
+                }
+                return;
             }
+            pooledPlayer = playerPool.acquire(context, bufferProfile);
+            exoPlayer = pooledPlayer.player;
+            resolveJob = StreamResolver.resolve(context, videoId, ytFiles -> {
+                resolveJob = null;
+                onStreamLinksLoaded(context, ytFiles, videoId, quality, result);
+            });
+        }
 
-            @Override
-            protected void onPostExecute(Void v) {
-                super.onPostExecute(v);
-                DataSource.Factory dataSourceFactory;
-                dataSourceFactory =
-                        new DefaultHttpDataSourceFactory(
-                                "ExoPlayer",
-                                null,
-                                DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS,
-                                DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS,
-                                true);
-                Uri uri = Uri.parse(server_response);
-                if(server_response.contains("https")){
-                    TrackSelector trackSelector = new DefaultTrackSelector();
-                    exoPlayer = ExoPlayerFactory.newSimpleInstance(context, trackSelector);
-                    MediaSource mediaSource = buildMediaSource(uri, uri, dataSourceFactory);
-                    exoPlayer.prepare(mediaSource);
-                    setupYoutubePlayer(eventChannel, textureEntry, result);
-                }
+        private void onStreamLinksLoaded(
+                Context context, SparseArray<YtFile> ytFiles, String videoId, String quality, Result result) {
+            if (isDisposed) {
+                return;
+            }
+            if (ytFiles == null) {
+                failCreate(result, "Unable to extract streams for " + videoId);
+                return;
+            }
+            this.ytFiles = ytFiles;
+            if (adaptive) {
+                adaptiveQuality = new AdaptiveQuality(ytFiles, quality, HttpStack.getBandwidthMeter());
+                currentVideo = adaptiveQuality.selectInitial();
+            } else {
+                currentVideo = ItagLadder.resolveStartupVideo(ytFiles, quality);
             }
+            if (currentVideo == null) {
+                failCreate(result, "No playable stream found for " + videoId);
+                return;
+            }
+            metrics.markResolved();
+            pooledPlayer.prepareAt(
+                    buildSource(ytFiles, currentVideo),
+                    0,
+                    startPositionMs);
+
+            setupYoutubePlayer(eventChannel, textureEntry, result);
         }
 
-        private String readStream(InputStream in) {
-            BufferedReader reader = null;
-            StringBuffer response = new StringBuffer();
-            try {
-                reader = new BufferedReader(new InputStreamReader(in));
-                String line = "";
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
+        private void loadLiveStream(Context context, String videoId, Result result) {
+            this.videoId = videoId;
+            isLive = true;
+            liveLatency = new LiveLatencyController(liveTargetOffsetMs);
+            resolveJob = StreamResolver.resolveLive(videoId, (manifestUrl, error) -> {
+                resolveJob = null;
+                if (isDisposed) {
+                    return;
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                if (manifestUrl == null || !manifestUrl.contains("https")) {
+                    String message = error != null ? error.getMessage() : "No live stream found for " + videoId;
+                    failCreate(result, message);
+                    return;
                 }
-            }
-            return response.toString();
+                DataSource.Factory dataSourceFactory = HttpStack.newDataSourceFactory();
+                this.manifestUrl = manifestUrl;
+                Uri uri = Uri.parse(manifestUrl);
+                pooledPlayer = playerPool.acquire(context, bufferProfile);
+                exoPlayer = pooledPlayer.player;
+                MediaSource mediaSource = MediaSources.buildLiveSource(uri, dataSourceFactory);
+                metrics.markResolved();
+                pooledPlayer.prepare(mediaSource);
+                setupYoutubePlayer(eventChannel, textureEntry, result);
+            });
         }
 
         @SuppressWarnings("deprecation")
@@ -442,24 +383,21 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
                         }
                     });
 
-            surface = new Surface(textureEntry.surfaceTexture());
-            exoPlayer.setVideoSurface(surface);
-            setAudioAttributes(exoPlayer);
+            if (textureEntry != null) {
+                surface = new Surface(textureEntry.surfaceTexture());
+            }
 
-            exoPlayer.addListener(
+            playerListener =
                     new DefaultEventListener() {
 
                         @Override
                         public void onPlayerStateChanged(final boolean playWhenReady, final int playbackState) {
                             super.onPlayerStateChanged(playWhenReady, playbackState);
-                            if (playbackState == Player.STATE_BUFFERING) {
-                                Map<String, Object> event = new HashMap<>();
-                                event.put("event", "bufferingUpdate");
-                                List<Integer> range = Arrays.asList(0, exoPlayer.getBufferedPercentage());
-                                // iOS supports a list of buffered ranges, so here is a list with a single range.
-                                event.put("values", Collections.singletonList(range));
-                                eventSink.success(event);
-                            } else if (playbackState == Player.STATE_READY) {
+                            setBuffering(playbackState == Player.STATE_BUFFERING);
+                            if (playbackState == Player.STATE_READY || playbackState == Player.STATE_ENDED) {
+                                expectBuffering = false;
+                            }
+                            if (playbackState == Player.STATE_READY) {
                                 if (!isInitialized) {
                                     isInitialized = true;
                                     sendInitialized();
@@ -469,20 +407,225 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
                                 event.put("event", "completed");
                                 eventSink.success(event);
                             }
+                            updateQueue();
+                            updateProgress();
+                        }
+
+                        @Override
+                        public void onPositionDiscontinuity(int reason) {
+                            if (reason == Player.DISCONTINUITY_REASON_SEEK
+                                    || reason == Player.DISCONTINUITY_REASON_SEEK_ADJUSTMENT) {
+                                expectBuffering = true;
+                            }
+                            updateQueue();
+                            updateProgress();
+                        }
+
+                        @Override
+                        public void onSeekProcessed() {
+                            // A seek within the buffer never leaves the ready state.
+                            if (exoPlayer.getPlaybackState() == Player.STATE_READY) {
+                                expectBuffering = false;
+                            }
+                        }
+
+                        @Override
+                        public void onTimelineChanged(Timeline timeline, Object manifest, int reason) {
+                            updateQueue();
+                        }
+
+                        @Override
+                        public void onLoadingChanged(boolean isLoading) {
+                            updateProgress();
                         }
 
                         @Override
                         public void onPlayerError(final ExoPlaybackException error) {
                             super.onPlayerError(error);
+                            if (UrlRefresher.isExpiryError(error, getPlayedUrl()) && urlRefresher.tryStart()) {
+                                refreshUrls();
+                                return;
+                            }
                             if (eventSink != null) {
                                 eventSink.error("VideoError", "Youtube player had error " + error, null);
                             }
                         }
-                    });
+                    };
+            videoListener =
+                    new VideoListener() {
+                        @Override
+                        public void onRenderedFirstFrame() {
+                            if (switchStartMs != C.TIME_UNSET) {
+                                sendQualityChanged();
+                            }
+                        }
+                    };
+            attachPlayer();
 
             Map<String, Object> reply = new HashMap<>();
-            reply.put("textureId", textureEntry.id());
+            reply.put("textureId", id);
             result.success(reply);
+            governor.touch(id);
+        }
+
+        private void attachPlayer() {
+            applyAudioOnly();
+            applyLiveMaxVideoHeight();
+            setAudioAttributes(exoPlayer);
+            exoPlayer.addListener(playerListener);
+            exoPlayer.addVideoListener(videoListener);
+            exoPlayer.addAnalyticsListener(metrics);
+            applyLoadingCap();
+            if (adaptiveQuality != null) {
+                progressHandler.postDelayed(adaptiveUpdater, AdaptiveQuality.CHECK_INTERVAL_MS);
+            }
+            if (liveLatency != null) {
+                liveLatency.reset();
+                progressHandler.postDelayed(liveLatencyUpdater, LiveLatencyController.CHECK_INTERVAL_MS);
+            }
+        }
+
+        /** Removes the listeners of this player and gives its ExoPlayer back to the pool. */
+        private void releasePlayer() {
+            progressHandler.removeCallbacks(progressUpdater);
+            progressHandler.removeCallbacks(adaptiveUpdater);
+            progressHandler.removeCallbacks(liveLatencyUpdater);
+            if (playerListener != null) {
+                exoPlayer.removeListener(playerListener);
+            }
+            if (videoListener != null) {
+                exoPlayer.removeVideoListener(videoListener);
+            }
+            exoPlayer.removeAnalyticsListener(metrics);
+            playerPool.release(pooledPlayer);
+            pooledPlayer = null;
+            exoPlayer = null;
+        }
+
+        @Override
+        public boolean isActive() {
+            return pooledPlayer != null && pooledPlayer.mediaSource != null;
+        }
+
+        @Override
+        public boolean isVisible() {
+            return isVisible;
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return exoPlayer != null && exoPlayer.getPlayWhenReady();
+        }
+
+        @Override
+        public boolean isDemoted() {
+            return demotedSource != null;
+        }
+
+        /** Keeps the source and position, pauses, and releases the ExoPlayer and its decoders. */
+        @Override
+        public void demote() {
+            if (!isActive() || isDisposed) {
+                return;
+            }
+            demotedSource = pooledPlayer.mediaSource;
+            demotedWindowIndex = exoPlayer.getCurrentWindowIndex();
+            demotedPositionMs = exoPlayer.getCurrentPosition();
+            setBuffering(false);
+            if (queue != null) {
+                // Queue work finishing while demoted must not reach the released ExoPlayer.
+                queue.detach();
+            }
+            releasePlayer();
+            Map<String, Object> event = new HashMap<>();
+            event.put("event", "demoted");
+            event.put("position", demotedPositionMs);
+            eventSink.success(event);
+        }
+
+        /** Prepares the kept source on a pooled player, paused at the kept position. */
+        @Override
+        public void restore() {
+            if (demotedSource == null || isDisposed) {
+                return;
+            }
+            pooledPlayer = playerPool.acquire(context, bufferProfile);
+            exoPlayer = pooledPlayer.player;
+            exoPlayer.setRepeatMode(repeatMode);
+            exoPlayer.setVolume(volume);
+            expectBuffering = true;
+            attachPlayer();
+            // A queue rebuilt while demoted prepares its new source itself once it is attached.
+            if (queue == null || queue.isPrepared()) {
+                pooledPlayer.prepareAt(demotedSource, demotedWindowIndex, demotedPositionMs);
+            }
+            demotedSource = null;
+            if (queue != null) {
+                queue.setPlayer(pooledPlayer);
+            }
+            Map<String, Object> event = new HashMap<>();
+            event.put("event", "restored");
+            eventSink.success(event);
+        }
+
+        @Override
+        public Map<String, Object> getUsage() {
+            Map<String, Object> usage = new HashMap<>();
+            usage.put("textureId", id);
+            usage.put("audioOnly", audioOnly);
+            usage.put("active", isActive());
+            usage.put("visible", isVisible);
+            usage.put("demoted", isDemoted());
+            usage.put("droppedEvents", eventSink.getDroppedCount());
+            if (exoPlayer != null) {
+                usage.put("state", exoPlayer.getPlaybackState());
+                usage.put("playing", exoPlayer.getPlayWhenReady());
+                usage.put("videoDecoder", exoPlayer.getVideoFormat() != null);
+                usage.put("audioDecoder", exoPlayer.getAudioFormat() != null);
+                usage.put("bufferedDurationMs", exoPlayer.getBufferedPosition() - exoPlayer.getCurrentPosition());
+                usage.put("allocatedBytes", pooledPlayer.loadControl.getAllocator().getTotalBytesAllocated());
+            } else {
+                usage.put("videoDecoder", false);
+                usage.put("audioDecoder", false);
+                usage.put("bufferedDurationMs", 0L);
+                usage.put("allocatedBytes", 0);
+            }
+            return usage;
+        }
+
+        /** Off-screen players stop loading and are demoted first. */
+        void setVisible(boolean visible) {
+            isVisible = visible;
+            applyLoadingCap();
+            governor.onVisibilityChanged();
+        }
+
+        /** Limits buffering ahead to {@link #TRIMMED_BUFFER_MS} while memory is low. */
+        void setTrimmed(boolean trimmed) {
+            isTrimmed = trimmed;
+            applyLoadingCap();
+        }
+
+        private void applyLoadingCap() {
+            if (pooledPlayer == null) {
+                return;
+            }
+            long capMs = C.TIME_UNSET;
+            if (!isVisible) {
+                capMs = 0;
+            } else if (isTrimmed) {
+                capMs = TRIMMED_BUFFER_MS;
+            }
+            pooledPlayer.loadControl.setLoadingCapMs(capMs);
+        }
+
+        void sendMemoryTrimmed(int stage, int level) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("event", "memoryTrimmed");
+            event.put("stage", stage);
+            event.put("level", level);
+            event.put("demoted", demotedSource != null);
+            eventSink.success(event);
         }
 
         @SuppressWarnings("deprecation")
@@ -496,28 +639,504 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
         }
 
         void play() {
-            exoPlayer.setPlayWhenReady(true);
+            if (exoPlayer != null) {
+                exoPlayer.setPlayWhenReady(true);
+            }
         }
 
         void pause() {
-            exoPlayer.setPlayWhenReady(false);
+            if (exoPlayer != null) {
+                exoPlayer.setPlayWhenReady(false);
+            }
         }
 
         void setLooping(boolean value) {
-            exoPlayer.setRepeatMode(value ? REPEAT_MODE_ALL : REPEAT_MODE_OFF);
+            repeatMode = value ? REPEAT_MODE_ALL : REPEAT_MODE_OFF;
+            if (exoPlayer != null) {
+                exoPlayer.setRepeatMode(repeatMode);
+            }
         }
 
         void setVolume(double value) {
-            float bracketedValue = (float) Math.max(0.0, Math.min(1.0, value));
-            exoPlayer.setVolume(bracketedValue);
+            volume = (float) Math.max(0.0, Math.min(1.0, value));
+            if (exoPlayer != null) {
+                exoPlayer.setVolume(volume);
+            }
         }
 
         void seekTo(int location) {
-            exoPlayer.seekTo(location);
+            if (exoPlayer != null) {
+                exoPlayer.seekTo(location);
+            }
         }
 
         long getPosition() {
-            return exoPlayer.getCurrentPosition();
+            return exoPlayer != null ? exoPlayer.getCurrentPosition() : demotedPositionMs;
+        }
+
+        /**
+         * Sends the buffered range in milliseconds as flat start and end pairs. ExoPlayer only
+         * keeps media from the playback position up to the buffered position, so there is a
+         * single range.
+         */
+        private void sendBufferedRange(long position, long bufferedPosition) {
+            bufferedRange[0] = Math.min(position, bufferedPosition);
+            bufferedRange[1] = bufferedPosition;
+            bufferingUpdateEvent.put("event", "bufferingUpdate");
+            bufferingUpdateEvent.put("values", bufferedRange);
+            eventSink.successReusable(bufferingUpdateEvent);
+        }
+
+        /**
+         * Sends bufferingStart and bufferingEnd on buffering edges. Buffering after the player was
+         * first ready counts as a rebuffer unless a seek or stream switch caused it, and
+         * bufferingEnd carries its duration.
+         */
+        private void setBuffering(boolean buffering) {
+            if (buffering == isBuffering) {
+                return;
+            }
+            isBuffering = buffering;
+            if (buffering) {
+                isRebuffering = isInitialized && !expectBuffering && switchStartMs == C.TIME_UNSET;
+            }
+            Map<String, Object> event = new HashMap<>();
+            if (buffering) {
+                bufferingStartMs = SystemClock.elapsedRealtime();
+                event.put("event", "bufferingStart");
+                event.put("isRebuffer", isRebuffering);
+            } else {
+                long durationMs = SystemClock.elapsedRealtime() - bufferingStartMs;
+                if (isRebuffering) {
+                    metrics.addRebuffer(durationMs);
+                }
+                event.put("event", "bufferingEnd");
+                event.put("durationMs", durationMs);
+                event.put("isRebuffer", isRebuffering);
+                event.put("rebufferCount", metrics.getRebufferCount());
+                event.put("totalRebufferMs", metrics.getRebufferMs());
+            }
+            eventSink.success(event);
+        }
+
+        /** Sets how often progress is pushed while playing or loading, or stops pushing for 0. */
+        void setPositionUpdateInterval(long intervalMs) {
+            positionUpdateIntervalMs = Math.max(0, intervalMs);
+            updateProgress();
+        }
+
+        Map<String, Object> getMetrics() {
+            Map<String, Object> values = metrics.getMetrics();
+            values.put("droppedEvents", eventSink.getDroppedCount());
+            values.putAll(urlRefresher.getStats());
+            return values;
+        }
+
+        /** Sets how often a metrics event is sent, or stops sending them for 0. */
+        void setMetricsInterval(long intervalMs) {
+            metricsIntervalMs = Math.max(0, intervalMs);
+            sendMetrics();
+        }
+
+        private void sendMetrics() {
+            progressHandler.removeCallbacks(metricsUpdater);
+            if (isDisposed || metricsIntervalMs == 0) {
+                return;
+            }
+            Map<String, Object> event = getMetrics();
+            event.put("event", "metrics");
+            eventSink.success(event);
+            progressHandler.postDelayed(metricsUpdater, metricsIntervalMs);
+        }
+
+        /**
+         * Sends a progress event if position, buffered position or state changed since the last
+         * one, and schedules the next check while the player is playing or loading.
+         */
+        private void updateProgress() {
+            progressHandler.removeCallbacks(progressUpdater);
+            if (isDisposed || exoPlayer == null || !isInitialized) {
+                return;
+            }
+            long position = exoPlayer.getCurrentPosition();
+            long bufferedPosition = exoPlayer.getBufferedPosition();
+            int state = exoPlayer.getPlaybackState();
+            boolean playWhenReady = exoPlayer.getPlayWhenReady();
+            if (position != lastSentPosition
+                    || state != lastSentState
+                    || playWhenReady != lastSentPlayWhenReady) {
+                lastSentPosition = position;
+                lastSentState = state;
+                lastSentPlayWhenReady = playWhenReady;
+                progressEvent.put("event", "progress");
+                progressEvent.put("position", position);
+                progressEvent.put("isBuffering", state == Player.STATE_BUFFERING);
+                eventSink.successReusable(progressEvent);
+            }
+            if (bufferedPosition != lastSentBufferedPosition) {
+                lastSentBufferedPosition = bufferedPosition;
+                sendBufferedRange(position, bufferedPosition);
+            }
+            boolean active = state == Player.STATE_READY || state == Player.STATE_BUFFERING;
+            if (positionUpdateIntervalMs > 0 && active && (playWhenReady || exoPlayer.isLoading())) {
+                progressHandler.postDelayed(progressUpdater, positionUpdateIntervalMs);
+            }
+        }
+
+        /**
+         * Switches up to the stream picked by {@link AdaptiveQuality} for the current bandwidth and
+         * buffer, and schedules the next check.
+         */
+        private void updateAdaptiveQuality() {
+            progressHandler.removeCallbacks(adaptiveUpdater);
+            if (isDisposed || exoPlayer == null || adaptiveQuality == null || queue != null || audioOnly) {
+                return;
+            }
+            int state = exoPlayer.getPlaybackState();
+            boolean active = state == Player.STATE_READY || state == Player.STATE_BUFFERING;
+            if (isInitialized && active && exoPlayer.getPlayWhenReady()) {
+                long bufferedDurationMs = exoPlayer.getBufferedPosition() - exoPlayer.getCurrentPosition();
+                YtFile target = adaptiveQuality.evaluate(bufferedDurationMs, isBuffering);
+                if (target != null) {
+                    switchVideo(target, "adaptive");
+                }
+            }
+            progressHandler.postDelayed(adaptiveUpdater, AdaptiveQuality.CHECK_INTERVAL_MS);
+        }
+
+        /**
+         * Measures the latency to the live edge, lets {@link LiveLatencyController} correct it,
+         * reports it, and schedules the next check.
+         */
+        private void updateLiveLatency() {
+            progressHandler.removeCallbacks(liveLatencyUpdater);
+            if (isDisposed || exoPlayer == null || liveLatency == null) {
+                return;
+            }
+            if (liveLatency.update(exoPlayer)) {
+                Map<String, Object> event = new HashMap<>();
+                event.put("event", "liveLatency");
+                event.put("latencyMs", liveLatency.getLatencyMs());
+                event.put("targetOffsetMs", liveLatency.getTargetOffsetMs());
+                event.put("speed", (double) liveLatency.getSpeed());
+                eventSink.success(event);
+            }
+            progressHandler.postDelayed(liveLatencyUpdater, LiveLatencyController.CHECK_INTERVAL_MS);
+        }
+
+        void setLiveTargetOffset(long targetOffsetMs) {
+            if (liveLatency != null) {
+                liveLatency.setTargetOffsetMs(targetOffsetMs);
+            }
+        }
+
+        /**
+         * Switches to {@code quality} on the existing player. VOD streams are swapped in place via
+         * {@link #switchVideo}; live streams are HLS, so the track selector is capped instead.
+         */
+        void setQuality(String quality, Result result) {
+            this.quality = quality;
+            if (isLive) {
+                liveMaxVideoHeight = ItagLadder.parseHeight(quality);
+                applyLiveMaxVideoHeight();
+                result.success(null);
+                return;
+            }
+            if (queue != null) {
+                queue.setQuality(quality);
+                result.success(null);
+                return;
+            }
+            if (ytFiles != null) {
+                applyQuality(quality);
+                result.success(null);
+                return;
+            }
+            // A preloaded player whose extraction was evicted from the cache since.
+            resolveJob = StreamResolver.resolve(context, videoId, resolved -> {
+                resolveJob = null;
+                if (isDisposed) {
+                    return;
+                }
+                if (resolved == null) {
+                    result.error("VideoError", "Unable to extract streams for " + videoId, null);
+                    return;
+                }
+                ytFiles = resolved;
+                applyQuality(quality);
+                result.success(null);
+            });
+        }
+
+        /** Applies the live quality cap, which the pool resets when the player is released. */
+        private void applyLiveMaxVideoHeight() {
+            if (pooledPlayer == null || !isLive) {
+                return;
+            }
+            DefaultTrackSelector trackSelector = pooledPlayer.trackSelector;
+            trackSelector.setParameters(trackSelector.buildUponParameters()
+                    .setMaxVideoSize(Integer.MAX_VALUE, liveMaxVideoHeight));
+        }
+
+        private void applyQuality(String quality) {
+            YtFile video;
+            if (adaptive) {
+                adaptiveQuality = new AdaptiveQuality(ytFiles, quality, HttpStack.getBandwidthMeter());
+                video = adaptiveQuality.selectInitial();
+            } else {
+                video = ItagLadder.resolveVideo(ytFiles, quality);
+            }
+            if (video != null && (currentVideo == null
+                    || video.getFormat().getItag() != currentVideo.getFormat().getItag())) {
+                switchVideo(video, "manual");
+            }
+        }
+
+        /**
+         * Replaces the video stream while keeping the player, surface and playback position. The
+         * last frame stays on the surface until the new stream renders, which is when the switch
+         * is reported. A demoted player reports it at once and plays the new stream on restore.
+         */
+        private void switchVideo(YtFile video, String reason) {
+            currentVideo = video;
+            switchStartMs = SystemClock.elapsedRealtime();
+            switchReason = reason;
+            if (!swapSource(buildSource(ytFiles, video))) {
+                sendQualityChanged();
+            }
+        }
+
+        private void sendQualityChanged() {
+            Map<String, Object> event = new HashMap<>();
+            event.put("event", "qualityChanged");
+            event.put("quality", ItagLadder.heightOf(currentVideo) + "p");
+            event.put("itag", currentVideo.getFormat().getItag());
+            event.put("reason", switchReason);
+            event.put("switchLatencyMs", SystemClock.elapsedRealtime() - switchStartMs);
+            event.put("bitrateEstimate", HttpStack.getBitrateEstimate());
+            eventSink.success(event);
+            switchStartMs = C.TIME_UNSET;
+            switchReason = null;
+        }
+
+        private String getPlayedUrl() {
+            if (isLive) {
+                return manifestUrl;
+            }
+            return queue == null && currentVideo != null ? currentVideo.getUrl() : null;
+        }
+
+        /**
+         * Resolves the video or live manifest again after its signed URLs expired, and continues
+         * at the current position with the fresh URLs.
+         */
+        private void refreshUrls() {
+            int windowIndex = exoPlayer.getCurrentWindowIndex();
+            long positionMs = exoPlayer.getCurrentPosition();
+            Log.i(TAG, "Refreshing expired URLs of " + videoId);
+            if (queue != null) {
+                if (queue.refreshCurrent()) {
+                    onUrlsRefreshed(positionMs);
+                } else {
+                    onUrlRefreshFailed("No queue item to refresh");
+                }
+                return;
+            }
+            if (isLive) {
+                resolveJob = StreamResolver.resolveLive(videoId, (manifestUrl, error) -> {
+                    resolveJob = null;
+                    if (isDisposed) {
+                        return;
+                    }
+                    if (manifestUrl == null || !manifestUrl.contains("https")) {
+                        onUrlRefreshFailed(error != null ? error.getMessage() : "No live stream found for " + videoId);
+                        return;
+                    }
+                    this.manifestUrl = manifestUrl;
+                    // A live stream continues at the live edge, not at the old position.
+                    replaceSource(
+                            MediaSources.buildLiveSource(Uri.parse(manifestUrl), HttpStack.newDataSourceFactory()),
+                            C.INDEX_UNSET,
+                            C.TIME_UNSET);
+                    onUrlsRefreshed(positionMs);
+                });
+                return;
+            }
+            extractionCache.remove(videoId);
+            resolveJob = StreamResolver.resolve(context, videoId, resolved -> {
+                resolveJob = null;
+                if (isDisposed) {
+                    return;
+                }
+                if (resolved == null) {
+                    onUrlRefreshFailed("Unable to extract streams for " + videoId);
+                    return;
+                }
+                ytFiles = resolved;
+                YtFile video = currentVideo != null ? resolved.get(currentVideo.getFormat().getItag()) : null;
+                if (video == null) {
+                    video = ItagLadder.resolveVideo(resolved, quality);
+                }
+                if (video == null) {
+                    onUrlRefreshFailed("No playable stream found for " + videoId);
+                    return;
+                }
+                if (adaptiveQuality != null) {
+                    adaptiveQuality = new AdaptiveQuality(resolved, quality, HttpStack.getBandwidthMeter());
+                    adaptiveQuality.startAt(video);
+                    // The player is prepared again anyway, so a lower stream costs no extra stall.
+                    video = adaptiveQuality.selectForPrepare();
+                    if (currentVideo == null
+                            || video.getFormat().getItag() != currentVideo.getFormat().getItag()) {
+                        switchStartMs = SystemClock.elapsedRealtime();
+                        switchReason = "adaptive";
+                    }
+                }
+                currentVideo = video;
+                replaceSource(
+                        buildSource(resolved, video),
+                        windowIndex,
+                        positionMs);
+                onUrlsRefreshed(positionMs);
+            });
+        }
+
+        /**
+         * Prepares {@code source} at the current position without resetting the player, or keeps it
+         * for {@link #restore} if demoted. Returns false in the latter case.
+         */
+        private boolean swapSource(MediaSource source) {
+            if (pooledPlayer == null) {
+                demotedSource = source;
+                return false;
+            }
+            expectBuffering = true;
+            pooledPlayer.prepare(source, false, false);
+            return true;
+        }
+
+        /** Prepares {@code source} at a position, or keeps it for {@link #restore} if demoted. */
+        private void replaceSource(MediaSource source, int windowIndex, long positionMs) {
+            if (pooledPlayer == null) {
+                demotedSource = source;
+                return;
+            }
+            expectBuffering = true;
+            if (positionMs != C.TIME_UNSET) {
+                pooledPlayer.prepareAt(source, windowIndex, positionMs);
+            } else {
+                pooledPlayer.prepare(source);
+            }
+        }
+
+        private void onUrlsRefreshed(long positionMs) {
+            urlRefresher.onRefreshed();
+            Map<String, Object> event = new HashMap<>();
+            event.put("event", "urlsRefreshed");
+            event.put("position", positionMs);
+            event.put("count", urlRefresher.getRefreshCount());
+            eventSink.success(event);
+        }
+
+        private void onUrlRefreshFailed(String message) {
+            urlRefresher.onFailed();
+            eventSink.error("VideoError", "Unable to refresh expired URLs: " + message, null);
+        }
+
+        /** Builds the source of {@code video}, or of the audio stream alone in audio-only mode. */
+        private MediaSource buildSource(SparseArray<YtFile> ytFiles, YtFile video) {
+            if (audioOnly) {
+                MediaSource audioSource = MediaSources.buildAudioSource(context, ytFiles, videoId, maxCacheSize);
+                if (audioSource != null) {
+                    return audioSource;
+                }
+            }
+            return MediaSources.buildVodSource(context, ytFiles, videoId, video, maxCacheSize);
+        }
+
+        /**
+         * Detaches the surface and disables the video renderer in audio-only mode, so no video
+         * decoder is allocated, or attaches and enables them again.
+         */
+        private void applyAudioOnly() {
+            exoPlayer.setVideoSurface(audioOnly ? null : surface);
+            DefaultTrackSelector trackSelector = pooledPlayer.trackSelector;
+            DefaultTrackSelector.ParametersBuilder parameters = trackSelector.buildUponParameters();
+            for (int i = 0; i < exoPlayer.getRendererCount(); i++) {
+                if (exoPlayer.getRendererType(i) == C.TRACK_TYPE_VIDEO) {
+                    parameters.setRendererDisabled(i, audioOnly);
+                }
+            }
+            trackSelector.setParameters(parameters);
+        }
+
+        /**
+         * Enters or leaves audio-only playback at the current position, e.g. when the app goes to
+         * or returns from the background. VOD streams switch to the audio-only itag; live streams
+         * only skip video decoding. A player created audio-only has no texture to return to.
+         */
+        void setAudioOnly(boolean audioOnly, Result result) {
+            if (!audioOnly && textureEntry == null) {
+                result.error("InvalidArguments", "Player was created audio-only and has no texture", null);
+                return;
+            }
+            if (audioOnly == this.audioOnly) {
+                result.success(null);
+                return;
+            }
+            this.audioOnly = audioOnly;
+            if (pooledPlayer != null) {
+                applyAudioOnly();
+            }
+            if (queue != null) {
+                queue.setAudioOnly(audioOnly);
+            } else if (!isLive && ytFiles != null && currentVideo != null) {
+                swapSource(buildSource(ytFiles, currentVideo));
+            }
+            if (!audioOnly) {
+                updateAdaptiveQuality();
+            }
+            Map<String, Object> event = new HashMap<>();
+            event.put("event", "audioOnlyChanged");
+            event.put("audioOnly", audioOnly);
+            eventSink.success(event);
+            result.success(null);
+        }
+
+        /** Returns the queue of this player, replacing single video playback on first use. */
+        PlaybackQueue getQueue() {
+            if (queue == null) {
+                queue = new PlaybackQueue(context, pooledPlayer, quality, audioOnly, maxCacheSize);
+            }
+            return queue;
+        }
+
+        /**
+         * Sends queueIndexChanged when the player moved to another queue item or learned the
+         * duration of the current one, and resolves the item after it.
+         */
+        private void updateQueue() {
+            if (queue == null || isDisposed || exoPlayer == null) {
+                return;
+            }
+            int index = queue.getCurrentIndex();
+            if (index < 0) {
+                return;
+            }
+            if (index != lastQueueIndex) {
+                queue.onCurrentItemChanged();
+            }
+            long durationMs = exoPlayer.getDuration();
+            if (index != lastQueueIndex || durationMs != lastQueueDurationMs) {
+                lastQueueIndex = index;
+                lastQueueDurationMs = durationMs;
+                Map<String, Object> event = new HashMap<>();
+                event.put("event", "queueIndexChanged");
+                event.put("index", index);
+                event.put("videoId", queue.getVideoId(index));
+                event.put("duration", durationMs);
+                eventSink.success(event);
+            }
         }
 
         @SuppressWarnings("SuspiciousNameCombination")
@@ -539,22 +1158,37 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
                     event.put("width", width);
                     event.put("height", height);
                 }
+                if (currentVideo != null) {
+                    event.put("quality", ItagLadder.heightOf(currentVideo) + "p");
+                }
                 eventSink.success(event);
             }
         }
 
         void dispose() {
-            if (isInitialized) {
-                exoPlayer.stop();
+            isDisposed = true;
+            progressHandler.removeCallbacks(progressUpdater);
+            progressHandler.removeCallbacks(adaptiveUpdater);
+            progressHandler.removeCallbacks(metricsUpdater);
+            progressHandler.removeCallbacks(liveLatencyUpdater);
+            if (resolveJob != null) {
+                resolveJob.cancel();
+                resolveJob = null;
+            }
+            if (queue != null) {
+                queue.release();
+            }
+            governor.unregister(id);
+            if (pooledPlayer != null) {
+                releasePlayer();
+            }
+            if (textureEntry != null) {
+                textureEntry.release();
             }
-            textureEntry.release();
             eventChannel.setStreamHandler(null);
             if (surface != null) {
                 surface.release();
             }
-            if (exoPlayer != null) {
-                exoPlayer.release();
-            }
         }
     }
 
@@ -576,12 +1210,33 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
     private YoutubePlayerPlugin(Registrar registrar) {
         this.registrar = registrar;
         this.videoPlayers = new HashMap<>();
+        HttpStack.init(registrar.context());
+        this.memoryTrimmer = new MemoryTrimmer(new MemoryTrimmer.Listener() {
+            @Override
+            public void onTrim(int stage, int level) {
+                trimMemory(stage, level);
+            }
+
+            @Override
+            public void onTrimLifted() {
+                for (YoutubePlayer player : videoPlayers.values()) {
+                    player.setTrimmed(false);
+                }
+            }
+        });
+        Application application = (Application) registrar.context().getApplicationContext();
+        application.registerComponentCallbacks(memoryTrimmer);
+        application.registerActivityLifecycleCallbacks(memoryTrimmer);
     }
 
     private final Map<Long, YoutubePlayer> videoPlayers;
 
     private final Registrar registrar;
 
+    private final MemoryTrimmer memoryTrimmer;
+
+    private long nextAudioOnlyId = -1;
+
     void onDestroy() {
         // The whole FlutterView is being destroyed. Here we release resources acquired for all instances
         // of YoutubePlayer. Once https://github.com/flutter/flutter/issues/19358 is resolved this may
@@ -591,6 +1246,32 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
             player.dispose();
         }
         videoPlayers.clear();
+        preloader.clear();
+        playerPool.clear();
+        HttpStack.saveEstimate();
+        Application application = (Application) registrar.context().getApplicationContext();
+        application.unregisterComponentCallbacks(memoryTrimmer);
+        application.unregisterActivityLifecycleCallbacks(memoryTrimmer);
+    }
+
+    /**
+     * Drops preloaded players, idle pooled players and extraction results and shortens buffers,
+     * then for {@link MemoryTrimmer#STAGE_DECODERS} releases the decoders of paused players.
+     */
+    private void trimMemory(int stage, int level) {
+        Log.i(TAG, "Trimming memory at level " + level);
+        preloader.clear();
+        playerPool.clear();
+        extractionCache.clear();
+        for (YoutubePlayer player : videoPlayers.values()) {
+            player.setTrimmed(true);
+        }
+        if (stage >= MemoryTrimmer.STAGE_DECODERS) {
+            governor.demotePaused();
+        }
+        for (YoutubePlayer player : videoPlayers.values()) {
+            player.sendMemoryTrimmed(stage, level);
+        }
     }
 
     @Override
@@ -606,44 +1287,111 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
                     player.dispose();
                 }
                 videoPlayers.clear();
+                preloader.clear();
                 break;
             case "create":
             {
-                TextureRegistry.SurfaceTextureEntry handle = textures.createSurfaceTexture();
+                CreateArgs args;
+                try {
+                    args = CreateArgs.fromMap(call.<Map<String, Object>>arguments());
+                } catch (IllegalArgumentException | ClassCastException e) {
+                    result.error("InvalidArguments", e.getMessage(), null);
+                    break;
+                }
+                // Audio-only players render nothing, so they get no texture, only an id that
+                // cannot clash with texture ids.
+                TextureRegistry.SurfaceTextureEntry handle = args.audioOnly ? null : textures.createSurfaceTexture();
+                long id = handle != null ? handle.id() : nextAudioOnlyId--;
                 EventChannel eventChannel =
                         new EventChannel(
-                                registrar.messenger(), "sarbagyastha.com.np/youtubePlayer/videoEvents" + handle.id());
-
-                YoutubePlayer player;
-                if (call.argument("asset") != null) {
-                    String assetLookupKey;
-                    if (call.argument("package") != null) {
-                        assetLookupKey =
-                                registrar.lookupKeyForAsset(
-                                        (String) call.argument("asset"), (String) call.argument("package"));
-                    } else {
-                        assetLookupKey = registrar.lookupKeyForAsset((String) call.argument("asset"));
+                                registrar.messenger(), "sarbagyastha.com.np/youtubePlayer/videoEvents" + id);
+                YoutubePlayer player = new YoutubePlayer(registrar.context(), eventChannel, id, handle, args);
+                videoPlayers.put(id, player);
+                governor.register(id, player);
+                player.load(registrar.context(), args, result, () -> videoPlayers.remove(id));
+                if (!args.preloadVideoIds.isEmpty()) {
+                    preloader.preload(registrar.context(), args.preloadVideoIds, args.quality, args.maxCacheSize);
+                }
+                break;
+            }
+            case "setExtractionCacheSize":
+                extractionCache.setMaxEntries(((Number) call.argument("maxEntries")).intValue());
+                result.success(null);
+                break;
+            case "extractionCacheStats":
+                result.success(extractionCache.getStats());
+                break;
+            case "mediaCacheStats":
+                result.success(MediaCache.getStats());
+                break;
+            case "preload":
+            {
+                List<String> videoIds;
+                String quality;
+                long preloadCacheSize;
+                try {
+                    Map<String, Object> arguments = call.arguments();
+                    videoIds = arguments != null ? CreateArgs.videoIdsValue(arguments, "videoIds") : null;
+                    if (videoIds == null) {
+                        throw new IllegalArgumentException("Missing videoIds");
                     }
-                    player =
-                            new YoutubePlayer(
-                                    registrar.context(),
-                                    eventChannel,
-                                    handle,
-                                    "asset:///" + assetLookupKey,
-                                    result);
-                    videoPlayers.put(handle.id(), player);
-                } else {
-                    player =
-                            new YoutubePlayer(
-                                    registrar.context(),
-                                    eventChannel,
-                                    handle,
-                                    (String) call.argument("uri"),
-                                    result);
-                    videoPlayers.put(handle.id(), player);
+                    quality = CreateArgs.qualityValue(arguments);
+                    preloadCacheSize = CreateArgs.longValue(arguments, "maxCacheSize", 0);
+                    if (preloadCacheSize < 0) {
+                        throw new IllegalArgumentException("maxCacheSize must not be negative");
+                    }
+                } catch (IllegalArgumentException | ClassCastException e) {
+                    result.error("InvalidArguments", e.getMessage(), null);
+                    break;
                 }
+                preloader.preload(registrar.context(), videoIds, quality, preloadCacheSize);
+                result.success(null);
                 break;
             }
+            case "setPreloadLimits":
+                preloader.setLimits(
+                        ((Number) call.argument("maxEntries")).intValue(),
+                        ((Number) call.argument("maxConcurrent")).intValue(),
+                        ((Number) call.argument("durationMs")).longValue());
+                result.success(null);
+                break;
+            case "preloadStats":
+                result.success(preloader.getStats());
+                break;
+            case "setResolverLimits":
+                StreamResolver.resolverExecutor.setPoolSize(((Number) call.argument("poolSize")).intValue());
+                StreamResolver.resolverExecutor.setTimeoutMs(((Number) call.argument("timeoutMs")).longValue());
+                result.success(null);
+                break;
+            case "resolverStats":
+                result.success(StreamResolver.resolverExecutor.getStats());
+                break;
+            case "liveProbeStats":
+                result.success(LiveManifestProbe.getStats());
+                break;
+            case "setPlayerPoolSize":
+                playerPool.setMaxSize(((Number) call.argument("maxSize")).intValue());
+                result.success(null);
+                break;
+            case "playerPoolStats":
+                result.success(playerPool.getStats());
+                break;
+            case "setMaxActivePlayers":
+                governor.setMaxActive(((Number) call.argument("maxActive")).intValue());
+                result.success(null);
+                break;
+            case "governorStats":
+                result.success(governor.getStats());
+                break;
+            case "memoryTrimStats":
+                result.success(memoryTrimmer.getStats());
+                break;
+            case "bandwidthStats":
+                result.success(HttpStack.getBandwidthStats());
+                break;
+            case "batch":
+                runBatch(call.<List<Map<String, Object>>>argument("commands"), result);
+                break;
             //Screen Start
             case "brightness":
                 result.success(getBrightness());
@@ -690,6 +1438,9 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
     }
 
     private void onMethodCall(MethodCall call, Result result, long textureId, YoutubePlayer player) {
+        if (restoresPlayer(call.method)) {
+            governor.touch(textureId);
+        }
         switch (call.method) {
             case "setLooping":
                 player.setLooping((Boolean) call.argument("looping"));
@@ -715,6 +1466,62 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
             case "position":
                 result.success(player.getPosition());
                 break;
+            case "setQueue":
+            {
+                List<String> videoIds = call.argument("videoIds");
+                Number startIndex = call.argument("startIndex");
+                player.getQueue().setQueue(videoIds, startIndex != null ? startIndex.intValue() : 0);
+                result.success(null);
+                break;
+            }
+            case "addToQueue":
+            {
+                Number index = call.argument("index");
+                player.getQueue().add((String) call.argument("videoId"), index != null ? index.intValue() : -1);
+                result.success(null);
+                break;
+            }
+            case "removeFromQueue":
+                try {
+                    player.getQueue().remove(((Number) call.argument("index")).intValue());
+                    result.success(null);
+                } catch (IndexOutOfBoundsException e) {
+                    result.error("InvalidArguments", e.getMessage(), null);
+                }
+                break;
+            case "skipTo":
+                try {
+                    player.getQueue().skipTo(((Number) call.argument("index")).intValue());
+                    result.success(null);
+                } catch (IndexOutOfBoundsException e) {
+                    result.error("InvalidArguments", e.getMessage(), null);
+                }
+                break;
+            case "setQuality":
+                player.setQuality((String) call.argument("quality"), result);
+                break;
+            case "setVisible":
+                player.setVisible((Boolean) call.argument("visible"));
+                result.success(null);
+                break;
+            case "setLiveTargetOffset":
+                player.setLiveTargetOffset(((Number) call.argument("targetOffsetMs")).longValue());
+                result.success(null);
+                break;
+            case "setAudioOnly":
+                player.setAudioOnly((Boolean) call.argument("audioOnly"), result);
+                break;
+            case "setPositionUpdateInterval":
+                player.setPositionUpdateInterval(((Number) call.argument("intervalMs")).longValue());
+                result.success(null);
+                break;
+            case "metrics":
+                result.success(player.getMetrics());
+                break;
+            case "setMetricsInterval":
+                player.setMetricsInterval(((Number) call.argument("intervalMs")).longValue());
+                result.success(null);
+                break;
             case "dispose":
                 player.dispose();
                 videoPlayers.remove(textureId);
@@ -726,6 +1533,93 @@ public class YoutubePlayerPlugin implements MethodCallHandler {
         }
     }
 
+    /**
+     * Runs {@code commands} in one pass and replies with their results in one list. A command is
+     * a map with a {@code method}, a {@code textureId} and optional {@code args}, and is handled
+     * like the method of the same name. {@code positions} returns the positions of the players in
+     * {@code textureIds}, or of all players, keyed by texture id. A command with malformed
+     * arguments fails on its own with {@code InvalidArguments}.
+     */
+    private void runBatch(List<Map<String, Object>> commands, Result result) {
+        if (commands == null) {
+            result.error("InvalidArguments", "Missing batch commands", null);
+            return;
+        }
+        BatchCall batchCall = new BatchCall(commands.size(), result);
+        for (int i = 0; i < commands.size(); i++) {
+            Result commandResult = batchCall.resultFor(i);
+            try {
+                runBatchCommand(commands.get(i), commandResult);
+            } catch (ClassCastException | NullPointerException e) {
+                commandResult.error("InvalidArguments", "Malformed batch command: " + e, null);
+            }
+        }
+    }
+
+    private void runBatchCommand(Map<String, Object> command, Result commandResult) {
+        String method = (String) command.get("method");
+        if ("positions".equals(method)) {
+            commandResult.success(getPositions((List<?>) command.get("textureIds")));
+            return;
+        }
+        Number textureId = (Number) command.get("textureId");
+        YoutubePlayer player = textureId != null ? videoPlayers.get(textureId.longValue()) : null;
+        if (player == null) {
+            commandResult.error(
+                    "Unknown textureId",
+                    "No video player associated with texture id " + textureId,
+                    null);
+            return;
+        }
+        Map<String, Object> arguments = new HashMap<>();
+        Object commandArguments = command.get("args");
+        if (commandArguments instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) commandArguments).entrySet()) {
+                arguments.put((String) entry.getKey(), entry.getValue());
+            }
+        }
+        arguments.put("textureId", textureId);
+        onMethodCall(new MethodCall(method, arguments), commandResult, textureId.longValue(), player);
+    }
+
+    private Map<Long, Long> getPositions(List<?> textureIds) {
+        Map<Long, Long> positions = new HashMap<>();
+        if (textureIds == null) {
+            for (Map.Entry<Long, YoutubePlayer> entry : videoPlayers.entrySet()) {
+                positions.put(entry.getKey(), entry.getValue().getPosition());
+            }
+            return positions;
+        }
+        for (Object id : textureIds) {
+            long textureId = ((Number) id).longValue();
+            YoutubePlayer player = videoPlayers.get(textureId);
+            if (player != null) {
+                positions.put(textureId, player.getPosition());
+            }
+        }
+        return positions;
+    }
+
+    /** Returns false for calls that a demoted player handles without its ExoPlayer. */
+    private static boolean restoresPlayer(String method) {
+        switch (method) {
+            case "pause":
+            case "setLooping":
+            case "setVolume":
+            case "position":
+            case "setVisible":
+            case "setLiveTargetOffset":
+            case "setAudioOnly":
+            case "setPositionUpdateInterval":
+            case "metrics":
+            case "setMetricsInterval":
+            case "dispose":
+                return false;
+            default:
+                return true;
+        }
+    }
+
     private float getBrightness(){
         float result = registrar.activity().getWindow().getAttributes().screenBrightness;
         if (result < 0) { // the application is using the system brightness
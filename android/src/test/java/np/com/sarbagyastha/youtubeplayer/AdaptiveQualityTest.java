@@ -0,0 +1,103 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static np.com.sarbagyastha.youtubeplayer.TestStreams.ytFiles;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import at.huber.youtubeExtractor.YtFile;
+
+// At an estimate of 1 Mbit/s, 360p MP4 (650 kbit/s) fits the allowed share and 720p MP4
+// (2.3 Mbit/s) does not; at 4 Mbit/s both fit. SystemClock.sleep advances Robolectric's clock
+// without waiting.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class AdaptiveQualityTest {
+
+    private final SparseArray<YtFile> ytFiles = ytFiles(136, 134, 160);
+
+    private final BandwidthMeter bandwidthMeter = mock(BandwidthMeter.class);
+
+    @Before
+    public void setUp() {
+        when(bandwidthMeter.getBitrateEstimate()).thenReturn(1000000L);
+    }
+
+    @Test
+    public void selectInitial_capsByBandwidthAndQuality() {
+        assertSame(ytFiles.get(134), newAdaptiveQuality("720p").selectInitial());
+        assertSame(ytFiles.get(160), newAdaptiveQuality("144p").selectInitial());
+
+        when(bandwidthMeter.getBitrateEstimate()).thenReturn(4000000L);
+        assertSame(ytFiles.get(136), newAdaptiveQuality("720p").selectInitial());
+    }
+
+    @Test
+    public void evaluate_keepsCurrentStreamWhenItIsTheTarget() {
+        AdaptiveQuality adaptiveQuality = newAdaptiveQuality("720p");
+        adaptiveQuality.selectInitial();
+        SystemClock.sleep(11000);
+        assertNull(adaptiveQuality.evaluate(20000, false));
+    }
+
+    @Test
+    public void evaluate_neverSwitchesDownInPlace() {
+        AdaptiveQuality adaptiveQuality = newAdaptiveQuality("720p");
+        adaptiveQuality.startAt(ytFiles.get(136));
+        SystemClock.sleep(11000);
+        assertNull(adaptiveQuality.evaluate(20000, false));
+        assertNull(adaptiveQuality.evaluate(20000, true));
+        assertNull(adaptiveQuality.evaluate(0, true));
+        assertSame(ytFiles.get(136), adaptiveQuality.getCurrent());
+    }
+
+    @Test
+    public void evaluate_switchesUpOnlyWithHealthyBufferAfterInterval() {
+        AdaptiveQuality adaptiveQuality = newAdaptiveQuality("720p");
+        adaptiveQuality.startAt(ytFiles.get(160));
+        assertNull(adaptiveQuality.evaluate(20000, false));
+
+        SystemClock.sleep(11000);
+        assertNull(adaptiveQuality.evaluate(20000, true));
+        assertNull(adaptiveQuality.evaluate(5000, false));
+        assertSame(ytFiles.get(134), adaptiveQuality.evaluate(20000, false));
+        assertNull(adaptiveQuality.evaluate(20000, false));
+
+        when(bandwidthMeter.getBitrateEstimate()).thenReturn(4000000L);
+        assertNull(adaptiveQuality.evaluate(20000, false));
+        SystemClock.sleep(11000);
+        assertSame(ytFiles.get(136), adaptiveQuality.evaluate(20000, false));
+    }
+
+    @Test
+    public void selectForPrepare_takesLowerStream() {
+        AdaptiveQuality adaptiveQuality = newAdaptiveQuality("720p");
+        adaptiveQuality.startAt(ytFiles.get(136));
+        assertSame(ytFiles.get(134), adaptiveQuality.selectForPrepare());
+        assertSame(ytFiles.get(134), adaptiveQuality.getCurrent());
+
+        // A fresh switch holds off the next up-switch.
+        when(bandwidthMeter.getBitrateEstimate()).thenReturn(4000000L);
+        assertNull(adaptiveQuality.evaluate(20000, false));
+    }
+
+    private AdaptiveQuality newAdaptiveQuality(String maxQuality) {
+        return new AdaptiveQuality(ytFiles, maxQuality, bandwidthMeter);
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.android.exoplayer2.C;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BufferProfileTest {
+
+    private static BufferProfile profile(String preset, String key, int value) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("preset", preset);
+        if (key != null) {
+            arguments.put(key, value);
+        }
+        return BufferProfile.fromMap(arguments);
+    }
+
+    private static void assertInvalid(Map<String, Object> arguments, String messagePart) {
+        try {
+            BufferProfile.fromMap(arguments);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(messagePart));
+        }
+    }
+
+    @Test
+    public void fromMap_returnsPresets() {
+        assertSame(BufferProfile.DEFAULT, BufferProfile.fromMap(null));
+        assertEquals(BufferProfile.DEFAULT, BufferProfile.fromMap(Collections.<String, Object>emptyMap()));
+        assertEquals(BufferProfile.DEFAULT, profile("default", null, 0));
+        assertEquals(BufferProfile.LOW_LATENCY, profile("lowLatency", null, 0));
+        assertEquals(BufferProfile.LOW_MEMORY, profile("lowMemory", null, 0));
+        assertEquals(BufferProfile.SMOOTH, profile("smooth", null, 0));
+    }
+
+    @Test
+    public void fromMap_overridesPresetValues() {
+        BufferProfile profile = profile("lowMemory", "targetBufferBytes", 8 * 1024 * 1024);
+        assertEquals(8 * 1024 * 1024, profile.targetBufferBytes);
+        assertEquals(BufferProfile.LOW_MEMORY.minBufferMs, profile.minBufferMs);
+        assertEquals(BufferProfile.LOW_MEMORY.maxBufferMs, profile.maxBufferMs);
+        assertNotEquals(BufferProfile.LOW_MEMORY, profile);
+
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("prioritizeTimeOverSizeThresholds", false);
+        assertEquals(false, BufferProfile.fromMap(arguments).prioritizeTimeOverSizeThresholds);
+    }
+
+    @Test
+    public void fromMap_rejectsUnknownPreset() {
+        assertInvalid(Collections.<String, Object>singletonMap("preset", "huge"), "Unknown buffer preset huge");
+    }
+
+    @Test
+    public void fromMap_rejectsInconsistentValues() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("bufferForPlaybackMs", -1);
+        assertInvalid(arguments, "must not be negative");
+
+        arguments = new HashMap<>();
+        arguments.put("preset", "lowLatency");
+        arguments.put("bufferForPlaybackAfterRebufferMs", 6000);
+        assertInvalid(arguments, "minBufferMs must cover");
+
+        arguments = new HashMap<>();
+        arguments.put("minBufferMs", 10000);
+        arguments.put("maxBufferMs", 5000);
+        assertInvalid(arguments, "maxBufferMs must not be less than minBufferMs");
+    }
+
+    @Test
+    public void equalsAndHashCode() {
+        BufferProfile profile = new BufferProfile(5000, 15000, 500, 1500, C.LENGTH_UNSET, true);
+        assertEquals(BufferProfile.LOW_LATENCY, profile);
+        assertEquals(BufferProfile.LOW_LATENCY.hashCode(), profile.hashCode());
+        assertNotEquals(BufferProfile.LOW_LATENCY,
+                new BufferProfile(5000, 15000, 500, 1500, C.LENGTH_UNSET, false));
+        assertNotEquals(BufferProfile.LOW_LATENCY, null);
+    }
+}
@@ -0,0 +1,171 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CreateArgsTest {
+
+    private static Map<String, Object> arguments() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("videoId", "abcdefghi_-");
+        return arguments;
+    }
+
+    private static void assertInvalid(Map<String, Object> arguments, String messagePart) {
+        try {
+            CreateArgs.fromMap(arguments);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(messagePart));
+        }
+    }
+
+    @Test
+    public void fromMap_appliesDefaults() {
+        CreateArgs args = CreateArgs.fromMap(arguments());
+        assertEquals("abcdefghi_-", args.videoId);
+        assertEquals(CreateArgs.DEFAULT_QUALITY, args.quality);
+        assertFalse(args.live);
+        assertEquals(0, args.startPositionMs);
+        assertEquals(BufferProfile.DEFAULT, args.bufferProfile);
+        assertEquals(0, args.maxCacheSize);
+        assertFalse(args.adaptive);
+        assertEquals(0, args.liveTargetOffsetMs);
+        assertTrue(args.preloadVideoIds.isEmpty());
+        assertFalse(args.audioOnly);
+    }
+
+    @Test
+    public void fromMap_readsEveryArgument() {
+        Map<String, Object> arguments = arguments();
+        arguments.put("quality", "1080p");
+        arguments.put("live", true);
+        arguments.put("startPositionMs", 1500);
+        arguments.put("maxCacheSize", 64L * 1024 * 1024);
+        arguments.put("adaptive", true);
+        arguments.put("liveTargetOffsetMs", 3000);
+        arguments.put("preloadVideoIds", Arrays.asList("bcdefghijkl", "cdefghijklm"));
+        arguments.put("audioOnly", true);
+        arguments.put("bufferProfile", Collections.singletonMap("preset", "lowLatency"));
+
+        CreateArgs args = CreateArgs.fromMap(arguments);
+        assertEquals("1080p", args.quality);
+        assertTrue(args.live);
+        assertEquals(1500, args.startPositionMs);
+        assertEquals(64L * 1024 * 1024, args.maxCacheSize);
+        assertTrue(args.adaptive);
+        assertEquals(3000, args.liveTargetOffsetMs);
+        assertEquals(Arrays.asList("bcdefghijkl", "cdefghijklm"), args.preloadVideoIds);
+        assertTrue(args.audioOnly);
+        assertEquals(BufferProfile.LOW_LATENCY, args.bufferProfile);
+    }
+
+    @Test
+    public void fromMap_rejectsMissingArguments() {
+        assertInvalid(null, "Missing create arguments");
+        assertInvalid(new HashMap<String, Object>(), "Invalid videoId");
+    }
+
+    @Test
+    public void fromMap_rejectsInvalidVideoIdAndQuality() {
+        Map<String, Object> arguments = arguments();
+        arguments.put("videoId", "abcdefghijksarbagya720p");
+        assertInvalid(arguments, "Invalid videoId");
+
+        arguments = arguments();
+        arguments.put("quality", "HD");
+        assertInvalid(arguments, "Invalid quality");
+    }
+
+    @Test
+    public void fromMap_rejectsNegativeValues() {
+        Map<String, Object> arguments = arguments();
+        arguments.put("startPositionMs", -1);
+        assertInvalid(arguments, "must not be negative");
+    }
+
+    @Test
+    public void fromMap_rejectsWrongTypes() {
+        Map<String, Object> arguments = arguments();
+        arguments.put("live", "true");
+        assertInvalid(arguments, "live must be a boolean");
+
+        arguments = arguments();
+        arguments.put("startPositionMs", "1500");
+        assertInvalid(arguments, "startPositionMs must be a number");
+
+        arguments = arguments();
+        arguments.put("bufferProfile", "smooth");
+        assertInvalid(arguments, "bufferProfile must be a map");
+
+        arguments = arguments();
+        arguments.put("preloadVideoIds", "bcdefghijkl");
+        assertInvalid(arguments, "preloadVideoIds must be a list");
+    }
+
+    @Test
+    public void fromMap_rejectsInvalidPreloadIds() {
+        Map<String, Object> arguments = arguments();
+        arguments.put("preloadVideoIds", Arrays.asList("bcdefghijkl", "short"));
+        assertInvalid(arguments, "Invalid preload videoId short");
+    }
+
+    @Test
+    public void fromMap_rejectsInvalidBufferProfile() {
+        Map<String, Object> arguments = arguments();
+        arguments.put("bufferProfile", Collections.singletonMap("preset", "huge"));
+        assertInvalid(arguments, "Unknown buffer preset huge");
+
+        Map<String, Object> bufferProfile = new HashMap<>();
+        bufferProfile.put("minBufferMs", 10000);
+        bufferProfile.put("maxBufferMs", 5000);
+        arguments.put("bufferProfile", bufferProfile);
+        assertInvalid(arguments, "maxBufferMs must not be less than minBufferMs");
+    }
+
+    @Test
+    public void preloadArguments() {
+        Map<String, Object> arguments = new HashMap<>();
+        assertNull(CreateArgs.videoIdsValue(arguments, "videoIds"));
+        assertEquals(CreateArgs.DEFAULT_QUALITY, CreateArgs.qualityValue(arguments));
+
+        arguments.put("videoIds", Arrays.asList("bcdefghijkl"));
+        arguments.put("quality", "480p");
+        assertEquals(Arrays.asList("bcdefghijkl"), CreateArgs.videoIdsValue(arguments, "videoIds"));
+        assertEquals("480p", CreateArgs.qualityValue(arguments));
+    }
+
+    @Test
+    public void preloadArguments_rejectInvalidValues() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("quality", "Invalid Quality");
+        try {
+            CreateArgs.qualityValue(arguments);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid quality Invalid Quality", e.getMessage());
+        }
+
+        arguments.put("videoIds", "bcdefghijkl");
+        try {
+            CreateArgs.videoIdsValue(arguments, "videoIds");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("videoIds must be a list", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static np.com.sarbagyastha.youtubeplayer.TestStreams.ytFile;
+import static np.com.sarbagyastha.youtubeplayer.TestStreams.ytFiles;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import at.huber.youtubeExtractor.YtFile;
+
+// SystemClock.sleep advances Robolectric's clock without waiting.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ExtractionCacheTest {
+
+    /** 2100-01-01, far beyond any test run. */
+    private static final long FAR_EXPIRE_SECONDS = 4102444800L;
+
+    private final ExtractionCache cache = new ExtractionCache();
+
+    @Test
+    public void parseExpire() {
+        assertEquals(1600000000L, ExtractionCache.parseExpire(
+                "https://r1.googlevideo.com/videoplayback?itag=22&expire=1600000000&ei=x"));
+        assertEquals(1600000000L, ExtractionCache.parseExpire(
+                "https://r1.googlevideo.com/videoplayback/expire/1600000000/itag/22/"));
+        assertEquals(0, ExtractionCache.parseExpire("https://r1.googlevideo.com/videoplayback?itag=22"));
+        assertEquals(0, ExtractionCache.parseExpire("https://r1.googlevideo.com/videoplayback?expire=soon"));
+        assertEquals(0, ExtractionCache.parseExpire(null));
+    }
+
+    @Test
+    public void get_returnsEntryUntilUrlsExpire() {
+        SparseArray<YtFile> ytFiles = new SparseArray<>();
+        ytFiles.put(22, ytFile(22, "https://r1.googlevideo.com/videoplayback?expire=" + FAR_EXPIRE_SECONDS));
+        cache.put("abcdefghijk", ytFiles, null);
+
+        SystemClock.sleep(60 * 60 * 1000);
+        ExtractionCache.Entry entry = cache.get("abcdefghijk");
+        assertNotNull(entry);
+        assertSame(ytFiles, entry.ytFiles);
+    }
+
+    @Test
+    public void put_dropsEntryWhoseEarliestUrlExpired() {
+        SparseArray<YtFile> ytFiles = new SparseArray<>();
+        ytFiles.put(22, ytFile(22, "https://r1.googlevideo.com/videoplayback?expire=" + FAR_EXPIRE_SECONDS));
+        ytFiles.put(140, ytFile(140, "https://r1.googlevideo.com/videoplayback?expire=1"));
+        cache.put("abcdefghijk", ytFiles, null);
+
+        assertNull(cache.get("abcdefghijk"));
+    }
+
+    @Test
+    public void get_expiresEntriesWithoutExpireAfterDefaultTtl() {
+        cache.put("abcdefghijk", ytFiles(22), null);
+
+        SystemClock.sleep(29 * 60 * 1000);
+        assertNotNull(cache.get("abcdefghijk"));
+        SystemClock.sleep(2 * 60 * 1000);
+        assertNull(cache.get("abcdefghijk"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    public void put_ignoresEmptyResults() {
+        cache.put("abcdefghijk", new SparseArray<YtFile>(), null);
+        cache.put("bcdefghijkl", null, null);
+
+        assertEquals(0, cache.getStats().get("size"));
+    }
+
+    @Test
+    public void setMaxEntries_evictsLeastRecentlyUsed() {
+        cache.setMaxEntries(2);
+        cache.put("aaaaaaaaaaa", ytFiles(22), null);
+        cache.put("bbbbbbbbbbb", ytFiles(22), null);
+        cache.get("aaaaaaaaaaa");
+        cache.put("ccccccccccc", ytFiles(22), null);
+
+        assertNotNull(cache.get("aaaaaaaaaaa"));
+        assertNull(cache.get("bbbbbbbbbbb"));
+        assertNotNull(cache.get("ccccccccccc"));
+        assertEquals(3L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+}
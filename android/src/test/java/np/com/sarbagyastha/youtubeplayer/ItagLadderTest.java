@@ -0,0 +1,94 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static np.com.sarbagyastha.youtubeplayer.TestStreams.ytFiles;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.util.SparseArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import at.huber.youtubeExtractor.YtFile;
+
+// Robolectric reports no hardware VP9 decoder, so only the MP4 rungs are selected.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ItagLadderTest {
+
+    @Test
+    public void resolveVideo_picksBestAtOrBelowQuality() {
+        SparseArray<YtFile> ytFiles = ytFiles(137, 136, 135, 134);
+        assertSame(ytFiles.get(135), ItagLadder.resolveVideo(ytFiles, "480p"));
+        assertSame(ytFiles.get(137), ItagLadder.resolveVideo(ytFiles, "1080p"));
+    }
+
+    @Test
+    public void resolveVideo_fallsBackToLowestAboveQuality() {
+        SparseArray<YtFile> ytFiles = ytFiles(137, 136);
+        assertSame(ytFiles.get(136), ItagLadder.resolveVideo(ytFiles, "360p"));
+    }
+
+    @Test
+    public void resolveVideo_prefersAdaptiveRungOverMuxedOnSameHeight() {
+        SparseArray<YtFile> ytFiles = ytFiles(134, 18);
+        assertSame(ytFiles.get(134), ItagLadder.resolveVideo(ytFiles, "360p"));
+    }
+
+    @Test
+    public void resolveVideo_capsByBitrate() {
+        SparseArray<YtFile> ytFiles = ytFiles(136, 135, 134);
+        assertSame(ytFiles.get(134), ItagLadder.resolveVideo(ytFiles, "720p", 700000));
+        assertSame(ytFiles.get(135), ItagLadder.resolveVideo(ytFiles, "720p", 1100000));
+    }
+
+    @Test
+    public void resolveVideo_fallsBackToLowestWhenNothingFitsBitrate() {
+        SparseArray<YtFile> ytFiles = ytFiles(136, 135);
+        assertSame(ytFiles.get(135), ItagLadder.resolveVideo(ytFiles, "720p", 1000));
+    }
+
+    @Test
+    public void resolveVideo_returnsNullWithoutVideoItags() {
+        assertNull(ItagLadder.resolveVideo(ytFiles(140, 251), "720p"));
+        assertNull(ItagLadder.resolveVideo(new SparseArray<YtFile>(), "720p"));
+    }
+
+    @Test
+    public void resolveAudio_prefersM4a() {
+        SparseArray<YtFile> ytFiles = ytFiles(251, 140, 136);
+        assertSame(ytFiles.get(140), ItagLadder.resolveAudio(ytFiles));
+        assertNull(ItagLadder.resolveAudio(ytFiles(136)));
+    }
+
+    @Test
+    public void heightOf() {
+        assertEquals(720, ItagLadder.heightOf(TestStreams.ytFile(136, null)));
+        assertEquals(360, ItagLadder.heightOf(TestStreams.ytFile(18, null)));
+        assertEquals(0, ItagLadder.heightOf(TestStreams.ytFile(140, null)));
+    }
+
+    @Test
+    public void isMuxed() {
+        assertTrue(ItagLadder.isMuxed(TestStreams.ytFile(18, null)));
+        assertFalse(ItagLadder.isMuxed(TestStreams.ytFile(134, null)));
+    }
+
+    @Test
+    public void parseHeight() {
+        assertEquals(1080, ItagLadder.parseHeight("1080p"));
+        assertEquals(144, ItagLadder.parseHeight("144p"));
+        assertEquals(720, ItagLadder.parseHeight("HDp"));
+        assertEquals(720, ItagLadder.parseHeight("480"));
+        assertEquals(720, ItagLadder.parseHeight(null));
+    }
+}
@@ -0,0 +1,178 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.SinglePeriodTimeline;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+// A 60 s live window whose default position is 10 s behind the live edge. The playlist has no
+// program date times, so the latency is the distance from the position to the end of the window.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class LiveLatencyControllerTest {
+
+    private static final long WINDOW_MS = 60000;
+
+    private static final long DEFAULT_POSITION_MS = 50000;
+
+    private final SimpleExoPlayer player = mock(SimpleExoPlayer.class);
+
+    @Before
+    public void setUp() {
+        Timeline timeline = new SinglePeriodTimeline(
+                C.msToUs(WINDOW_MS),
+                C.msToUs(WINDOW_MS),
+                0,
+                C.msToUs(DEFAULT_POSITION_MS),
+                true,
+                true,
+                null);
+        when(player.getCurrentTimeline()).thenReturn(timeline);
+        when(player.getPlaybackState()).thenReturn(Player.STATE_READY);
+    }
+
+    private void playAt(long positionMs) {
+        when(player.getCurrentPosition()).thenReturn(positionMs);
+    }
+
+    @Test
+    public void update_returnsFalseWithoutLiveWindow() {
+        when(player.getCurrentTimeline()).thenReturn(Timeline.EMPTY);
+        LiveLatencyController controller = new LiveLatencyController(10000);
+
+        assertFalse(controller.update(player));
+        assertEquals(C.TIME_UNSET, controller.getLatencyMs());
+    }
+
+    @Test
+    public void update_onlyMeasuresWithoutTarget() {
+        LiveLatencyController controller = new LiveLatencyController(0);
+        playAt(30000);
+
+        assertTrue(controller.update(player));
+        assertEquals(30000, controller.getLatencyMs());
+        verify(player, never()).seekTo(anyLong());
+        assertEquals(1f, controller.getSpeed(), 0f);
+    }
+
+    @Test
+    public void update_seeksToTargetFirst() {
+        LiveLatencyController controller = new LiveLatencyController(10000);
+        playAt(45000);
+
+        controller.update(player);
+        verify(player).seekTo(DEFAULT_POSITION_MS);
+        assertEquals(10000, controller.getLatencyMs());
+        assertEquals(1f, controller.getSpeed(), 0f);
+    }
+
+    @Test
+    public void update_clampsCatchUpSpeed() {
+        LiveLatencyController controller = new LiveLatencyController(10000);
+        playAt(DEFAULT_POSITION_MS);
+        controller.update(player);
+
+        playAt(45000);
+        controller.update(player);
+        assertEquals(1.05f, controller.getSpeed(), 0.001f);
+
+        playAt(40000);
+        controller.update(player);
+        assertEquals(1.08f, controller.getSpeed(), 0.001f);
+
+        playAt(58000);
+        controller.update(player);
+        assertEquals(0.97f, controller.getSpeed(), 0.001f);
+
+        playAt(50300);
+        controller.update(player);
+        assertEquals(1f, controller.getSpeed(), 0f);
+        verify(player, never()).seekTo(anyLong());
+    }
+
+    @Test
+    public void update_seeksWhenMoreThan20sBehind() {
+        LiveLatencyController controller = new LiveLatencyController(10000);
+        playAt(DEFAULT_POSITION_MS);
+        controller.update(player);
+
+        playAt(35000);
+        controller.update(player);
+        verify(player, never()).seekTo(anyLong());
+
+        playAt(20000);
+        controller.update(player);
+        verify(player).seekTo(DEFAULT_POSITION_MS);
+        assertEquals(10000, controller.getLatencyMs());
+    }
+
+    @Test
+    public void update_keepsTargetAtOrBehindDefaultPosition() {
+        LiveLatencyController controller = new LiveLatencyController(2000);
+        playAt(45000);
+        controller.update(player);
+        verify(player).seekTo(DEFAULT_POSITION_MS);
+        assertEquals(10000, controller.getLatencyMs());
+
+        playAt(DEFAULT_POSITION_MS);
+        controller.update(player);
+        assertEquals(1f, controller.getSpeed(), 0f);
+    }
+
+    @Test
+    public void update_keepsTargetWithinWindow() {
+        LiveLatencyController controller = new LiveLatencyController(90000);
+        playAt(45000);
+        controller.update(player);
+
+        verify(player).seekTo(0);
+        assertEquals(WINDOW_MS, controller.getLatencyMs());
+    }
+
+    @Test
+    public void update_restoresNormalSpeedWhileBuffering() {
+        LiveLatencyController controller = new LiveLatencyController(10000);
+        playAt(DEFAULT_POSITION_MS);
+        controller.update(player);
+        playAt(40000);
+        controller.update(player);
+        assertEquals(1.08f, controller.getSpeed(), 0.001f);
+
+        when(player.getPlaybackState()).thenReturn(Player.STATE_BUFFERING);
+        controller.update(player);
+        assertEquals(1f, controller.getSpeed(), 0f);
+    }
+
+    @Test
+    public void reset_restoresNormalSpeed() {
+        LiveLatencyController controller = new LiveLatencyController(10000);
+        playAt(DEFAULT_POSITION_MS);
+        controller.update(player);
+        playAt(40000);
+        controller.update(player);
+        controller.reset();
+
+        assertEquals(1f, controller.getSpeed(), 0f);
+        assertEquals(C.TIME_UNSET, controller.getLatencyMs());
+    }
+}
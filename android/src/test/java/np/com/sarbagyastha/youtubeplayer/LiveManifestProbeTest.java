@@ -0,0 +1,77 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class LiveManifestProbeTest {
+
+    private static final String MANIFEST_URL = "https://manifest.googlevideo.com/api/manifest/hls_variant"
+            + "/expire/1600000000/sparams/expire,id,itag,source/id/abc.1/file/index.m3u8";
+
+    private static String scan(String page) throws IOException {
+        return new LiveManifestProbe.Scanner().scan(new StringReader(page));
+    }
+
+    @Test
+    public void scan_readsPlainJson() throws IOException {
+        assertEquals(MANIFEST_URL, scan("{\"hlsManifestUrl\":\"" + MANIFEST_URL + "\",\"isLive\":true}"));
+    }
+
+    @Test
+    public void scan_keepsCommasInUrl() throws IOException {
+        assertEquals(MANIFEST_URL, scan("\"hlsManifestUrl\": \"" + MANIFEST_URL + "\"}"));
+    }
+
+    @Test
+    public void scan_unescapesSlashes() throws IOException {
+        String escaped = MANIFEST_URL.replace("/", "\\/");
+        assertEquals(MANIFEST_URL, scan("\"hlsManifestUrl\":\"" + escaped + "\","));
+    }
+
+    @Test
+    public void scan_unescapesDoublyEscapedValue() throws IOException {
+        String escaped = MANIFEST_URL.replace("/", "\\\\\\/");
+        assertEquals(MANIFEST_URL, scan("player_response=\"{\\\"hlsManifestUrl\\\":\\\"" + escaped + "\\\"}\""));
+    }
+
+    @Test
+    public void scan_decodesUnicodeEscapes() throws IOException {
+        assertEquals(
+                "https://manifest.googlevideo.com/api?a=1&b=2",
+                scan("\"hlsManifestUrl\":\"https:\\/\\/manifest.googlevideo.com\\/api?a=1\\u0026b=2\""));
+    }
+
+    @Test
+    public void scan_returnsNullWithoutToken() throws IOException {
+        assertNull(scan("{\"videoDetails\":{\"isLive\":false}}"));
+        assertNull(scan(""));
+    }
+
+    @Test
+    public void scan_findsTokenAcrossBufferBoundaryAndStopsReading() throws IOException {
+        StringBuilder page = new StringBuilder();
+        while (page.length() < 8 * 1024 - 5) {
+            page.append(' ');
+        }
+        page.append("\"hlsManifestUrl\":\"").append(MANIFEST_URL).append('"');
+        int scannedLength = page.length();
+        while (page.length() < 64 * 1024) {
+            page.append(' ');
+        }
+        LiveManifestProbe.Scanner scanner = new LiveManifestProbe.Scanner();
+
+        assertEquals(MANIFEST_URL, scanner.scan(new StringReader(page.toString())));
+        assertTrue(scanner.charsScanned < 3 * 8 * 1024);
+        assertTrue(scanner.charsScanned >= scannedLength);
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MemoryTrimmerTest {
+
+    @Test
+    public void stageFor() {
+        assertEquals(MemoryTrimmer.STAGE_NONE, MemoryTrimmer.stageFor(0));
+        assertEquals(MemoryTrimmer.STAGE_CACHES, MemoryTrimmer.stageFor(TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(MemoryTrimmer.STAGE_CACHES, MemoryTrimmer.stageFor(TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(MemoryTrimmer.STAGE_DECODERS, MemoryTrimmer.stageFor(TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(MemoryTrimmer.STAGE_CACHES, MemoryTrimmer.stageFor(TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(MemoryTrimmer.STAGE_DECODERS, MemoryTrimmer.stageFor(TRIM_MEMORY_BACKGROUND));
+        assertEquals(MemoryTrimmer.STAGE_DECODERS, MemoryTrimmer.stageFor(TRIM_MEMORY_MODERATE));
+        assertEquals(MemoryTrimmer.STAGE_DECODERS, MemoryTrimmer.stageFor(TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void trimsAndLiftsThroughListener() {
+        List<String> calls = new ArrayList<>();
+        MemoryTrimmer trimmer = new MemoryTrimmer(new MemoryTrimmer.Listener() {
+            @Override
+            public void onTrim(int stage, int level) {
+                calls.add("trim " + stage + " " + level);
+            }
+
+            @Override
+            public void onTrimLifted() {
+                calls.add("lifted");
+            }
+        });
+
+        trimmer.onTrimMemory(0);
+        trimmer.onActivityStarted(null);
+        trimmer.onTrimMemory(TRIM_MEMORY_UI_HIDDEN);
+        trimmer.onLowMemory();
+        trimmer.onActivityStarted(null);
+        trimmer.onActivityStarted(null);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("trim " + MemoryTrimmer.STAGE_CACHES + " " + TRIM_MEMORY_UI_HIDDEN);
+        expected.add("trim " + MemoryTrimmer.STAGE_DECODERS + " " + TRIM_MEMORY_COMPLETE);
+        expected.add("lifted");
+        assertEquals(expected, calls);
+        assertEquals(2, trimmer.getStats().get("trims"));
+    }
+}
@@ -0,0 +1,179 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static np.com.sarbagyastha.youtubeplayer.TestStreams.ytFiles;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
+import com.google.android.exoplayer2.source.SinglePeriodTimeline;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import at.huber.youtubeExtractor.YtFile;
+
+// Extractions are tracked jobs that a test completes by hand. The mocked player stays at the first
+// window of the concatenated source, as seeks on it do nothing.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PlaybackQueueTest {
+
+    private final ResolverExecutor resolverExecutor = new ResolverExecutor();
+
+    private final Map<String, ResolverExecutor.Job<SparseArray<YtFile>>> jobs = new HashMap<>();
+
+    private final SimpleExoPlayer player = mockPlayer();
+
+    private final PooledPlayer pooledPlayer = new PooledPlayer(player, null, null);
+
+    private PlaybackQueue queue;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        queue = new PlaybackQueue(context, pooledPlayer, "720p", false, 0, this::resolve);
+    }
+
+    @Test
+    public void skipTo_unresolvedItemPlaysOnceResolved() {
+        queue.setQueue(Arrays.asList("a", "b", "c"), 0);
+        assertFalse(queue.isPrepared());
+        resolveItem("a");
+        assertTrue(queue.isPrepared());
+        assertTrue(jobs.containsKey("b"));
+
+        queue.skipTo(2);
+        verify(player, never()).seekTo(1, C.TIME_UNSET);
+        resolveItem("c");
+        // "b" is still unresolved, so "c" is the second window.
+        verify(player).seekTo(1, C.TIME_UNSET);
+        assertEquals(2, getSourceSize());
+    }
+
+    @Test
+    public void remove_currentItemMovesOnToNextItem() {
+        queue.setQueue(Arrays.asList("a", "b", "c"), 0);
+        resolveItem("a");
+        resolveItem("b");
+        assertEquals(2, getSourceSize());
+        assertFalse(jobs.containsKey("c"));
+
+        queue.remove(0);
+        assertEquals(1, getSourceSize());
+        assertEquals("b", queue.getVideoId(0));
+        assertEquals(0, queue.getCurrentIndex());
+        assertTrue(jobs.containsKey("c"));
+    }
+
+    @Test
+    public void remove_pendingItemCancelsItsExtraction() {
+        queue.setQueue(Arrays.asList("a", "b", "c"), 0);
+        resolveItem("a");
+        queue.skipTo(2);
+
+        queue.remove(2);
+        assertTrue(jobs.get("c").isCancelled());
+        queue.remove(1);
+        assertTrue(jobs.get("b").isCancelled());
+        resolveItem("c");
+        verify(player, never()).seekTo(1, C.TIME_UNSET);
+        assertEquals(1, getSourceSize());
+    }
+
+    @Test
+    public void failedItemIsSkipped() {
+        queue.setQueue(Arrays.asList("a", "b", "c", "d"), 0);
+        failItem("a");
+        assertFalse(queue.isPrepared());
+        resolveItem("b");
+        assertTrue(queue.isPrepared());
+        assertEquals(1, queue.getCurrentIndex());
+
+        // A failed next item is passed over when prefetching.
+        failItem("c");
+        assertTrue(jobs.containsKey("d"));
+    }
+
+    @Test
+    public void rebuild_whileDetachedIsAppliedOnAttach() {
+        queue.setQueue(Arrays.asList("a", "b"), 0);
+        resolveItem("a");
+        ResolverExecutor.Job<SparseArray<YtFile>> prefetchJob = jobs.get("b");
+        when(player.getCurrentPosition()).thenReturn(5000L);
+        queue.detach();
+
+        queue.setQuality("360p");
+        assertTrue(prefetchJob.isCancelled());
+        assertFalse(queue.isPrepared());
+        assertEquals(0, queue.getCurrentIndex());
+        resolveItem("a");
+        assertFalse(queue.isPrepared());
+
+        SimpleExoPlayer attachedPlayer = mockPlayer();
+        queue.setPlayer(new PooledPlayer(attachedPlayer, null, null));
+        assertTrue(queue.isPrepared());
+        verify(attachedPlayer).seekTo(0, 5000L);
+        verify(player, never()).seekTo(0, 5000L);
+    }
+
+    @Test
+    public void refreshCurrent_cancelsRunningExtractions() {
+        queue.setQueue(Arrays.asList("a", "b"), 0);
+        resolveItem("a");
+        ResolverExecutor.Job<SparseArray<YtFile>> prefetchJob = jobs.get("b");
+
+        assertTrue(queue.refreshCurrent());
+        assertTrue(prefetchJob.isCancelled());
+        assertFalse(queue.isPrepared());
+    }
+
+    private ResolverExecutor.Job<SparseArray<YtFile>> resolve(
+            Context context, String videoId, StreamResolver.Callback callback) {
+        ResolverExecutor.Job<SparseArray<YtFile>> job =
+                resolverExecutor.track((ytFiles, error) -> callback.onResolved(ytFiles));
+        jobs.put(videoId, job);
+        return job;
+    }
+
+    private void resolveItem(String videoId) {
+        jobs.get(videoId).complete(ytFiles(18));
+    }
+
+    private void failItem(String videoId) {
+        jobs.get(videoId).complete(null);
+    }
+
+    private int getSourceSize() {
+        return ((ConcatenatingMediaSource) pooledPlayer.mediaSource).getSize();
+    }
+
+    private static SimpleExoPlayer mockPlayer() {
+        SimpleExoPlayer player = mock(SimpleExoPlayer.class);
+        Timeline timeline = new SinglePeriodTimeline(C.TIME_UNSET, false, false);
+        when(player.getCurrentTimeline()).thenReturn(timeline);
+        return player;
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PlayerGovernorTest {
+
+    private final PlayerGovernor governor = new PlayerGovernor();
+
+    private FakeMember register(long id) {
+        FakeMember member = new FakeMember();
+        governor.register(id, member);
+        return member;
+    }
+
+    @Test
+    public void register_demotesLeastRecentlyUsedOverLimit() {
+        governor.setMaxActive(2);
+        FakeMember first = register(1);
+        FakeMember second = register(2);
+        FakeMember third = register(3);
+
+        assertFalse(first.active);
+        assertTrue(second.active);
+        assertTrue(third.active);
+        assertEquals(1L, governor.getStats().get("demotions"));
+    }
+
+    @Test
+    public void touch_marksPlayerAsRecentlyUsed() {
+        governor.setMaxActive(2);
+        FakeMember first = register(1);
+        FakeMember second = register(2);
+        governor.touch(1);
+        register(3);
+
+        assertTrue(first.active);
+        assertFalse(second.active);
+    }
+
+    @Test
+    public void register_prefersInvisiblePlayers() {
+        governor.setMaxActive(2);
+        FakeMember first = register(1);
+        FakeMember second = register(2);
+        second.visible = false;
+        register(3);
+
+        assertTrue(first.active);
+        assertFalse(second.active);
+    }
+
+    @Test
+    public void touch_restoresDemotedPlayerAndDemotesAnother() {
+        governor.setMaxActive(2);
+        FakeMember first = register(1);
+        FakeMember second = register(2);
+        register(3);
+        governor.touch(1);
+
+        assertTrue(first.active);
+        assertEquals(1, first.restores);
+        assertFalse(second.active);
+        assertEquals(2L, governor.getStats().get("demotions"));
+        assertEquals(1L, governor.getStats().get("restores"));
+    }
+
+    @Test
+    public void touch_doesNotRestorePlayerThatIsStillResolving() {
+        FakeMember member = new FakeMember();
+        member.active = false;
+        governor.register(1, member);
+        governor.touch(1);
+
+        assertFalse(member.active);
+        assertEquals(0, member.restores);
+        assertEquals(0L, governor.getStats().get("restores"));
+    }
+
+    @Test
+    public void setMaxActive_keepsMostRecentlyUsed() {
+        FakeMember first = register(1);
+        FakeMember second = register(2);
+        FakeMember third = register(3);
+        governor.setMaxActive(1);
+
+        assertFalse(first.active);
+        assertFalse(second.active);
+        assertTrue(third.active);
+        assertEquals(1, governor.getStats().get("active"));
+    }
+
+    @Test
+    public void onVisibilityChanged_demotesOverLimitPreferringInvisible() {
+        governor.setMaxActive(2);
+        FakeMember first = register(1);
+        FakeMember second = register(2);
+        FakeMember third = new FakeMember();
+        third.active = false;
+        governor.register(3, third);
+        third.active = true;
+        second.visible = false;
+        governor.onVisibilityChanged();
+
+        assertTrue(first.active);
+        assertFalse(second.active);
+        assertTrue(third.active);
+    }
+
+    @Test
+    public void unregister_freesSlot() {
+        governor.setMaxActive(2);
+        FakeMember first = register(1);
+        register(2);
+        governor.unregister(2);
+        register(3);
+
+        assertTrue(first.active);
+        assertEquals(0L, governor.getStats().get("demotions"));
+    }
+
+    @Test
+    public void demotePaused_keepsPlayingPlayers() {
+        FakeMember first = register(1);
+        FakeMember second = register(2);
+        first.playing = true;
+        governor.demotePaused();
+
+        assertTrue(first.active);
+        assertFalse(second.active);
+        assertEquals(1L, governor.getStats().get("demotions"));
+    }
+
+    private static final class FakeMember implements PlayerGovernor.Member {
+        boolean active = true;
+        boolean visible = true;
+        boolean playing;
+        boolean demoted;
+        int restores;
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public boolean isVisible() {
+            return visible;
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return playing;
+        }
+
+        @Override
+        public boolean isDemoted() {
+            return demoted;
+        }
+
+        @Override
+        public void demote() {
+            active = false;
+            demoted = true;
+        }
+
+        @Override
+        public void restore() {
+            active = true;
+            demoted = false;
+            restores++;
+        }
+
+        @Override
+        public Map<String, Object> getUsage() {
+            return new HashMap<>();
+        }
+    }
+}
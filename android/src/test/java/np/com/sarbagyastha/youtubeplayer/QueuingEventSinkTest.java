@@ -0,0 +1,147 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+
+public class QueuingEventSinkTest {
+
+    private final RecordingSink delegate = new RecordingSink();
+
+    private static Map<String, Object> event(String type, Object value) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("event", type);
+        event.put("value", value);
+        return event;
+    }
+
+    @Test
+    public void deliversRightAwayOnceDelegateIsSet() {
+        QueuingEventSink sink = new QueuingEventSink();
+        sink.setDelegate(delegate);
+        Map<String, Object> event = event("initialized", 1);
+        sink.success(event);
+
+        assertEquals(Arrays.<Object>asList(event), delegate.events);
+    }
+
+    @Test
+    public void queuesInOrderUntilDelegateIsSet() {
+        QueuingEventSink sink = new QueuingEventSink();
+        Map<String, Object> event = event("initialized", 1);
+        sink.success(event);
+        sink.error("VideoError", "Failed", null);
+        sink.endOfStream();
+        sink.success(event("completed", 2));
+        sink.setDelegate(delegate);
+
+        assertEquals(Arrays.<Object>asList(event, "error VideoError", "endOfStream"), delegate.events);
+    }
+
+    @Test
+    public void replacesQueuedUpdateOfSameKind() {
+        QueuingEventSink sink = new QueuingEventSink();
+        Map<String, Object> initialized = event("initialized", 1);
+        Map<String, Object> progress = event("progress", 2000);
+        sink.success(event("progress", 1000));
+        sink.success(initialized);
+        sink.success(progress);
+        sink.success(event("bufferingUpdate", 1000));
+        Map<String, Object> bufferingUpdate = event("bufferingUpdate", 3000);
+        sink.success(bufferingUpdate);
+        sink.setDelegate(delegate);
+
+        assertEquals(Arrays.<Object>asList(progress, initialized, bufferingUpdate), delegate.events);
+        assertEquals(0, sink.getDroppedCount());
+    }
+
+    @Test
+    public void replacesQueuedLiveLatencyUpdate() {
+        QueuingEventSink sink = new QueuingEventSink();
+        Map<String, Object> liveLatency = event("liveLatency", 3000);
+        sink.success(event("liveLatency", 5000));
+        sink.success(liveLatency);
+        sink.setDelegate(delegate);
+
+        assertEquals(Arrays.<Object>asList(liveLatency), delegate.events);
+    }
+
+    @Test
+    public void dropsOldestEventWhenFull() {
+        QueuingEventSink sink = new QueuingEventSink(3);
+        List<Object> events = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<String, Object> event = event("queueIndexChanged", i);
+            events.add(event);
+            sink.success(event);
+        }
+        sink.setDelegate(delegate);
+
+        assertEquals(events.subList(1, 4), delegate.events);
+        assertEquals(1, sink.getDroppedCount());
+    }
+
+    @Test
+    public void dropsUpdatesBeforeOtherEventsWhenFull() {
+        QueuingEventSink sink = new QueuingEventSink(3);
+        Map<String, Object> initialized = event("initialized", 1);
+        Map<String, Object> progress = event("progress", 1000);
+        Map<String, Object> first = event("queueIndexChanged", 0);
+        Map<String, Object> second = event("queueIndexChanged", 1);
+        sink.success(initialized);
+        sink.success(progress);
+        sink.success(first);
+        sink.success(second);
+        sink.setDelegate(delegate);
+
+        assertEquals(Arrays.<Object>asList(initialized, first, second), delegate.events);
+        assertEquals(1, sink.getDroppedCount());
+    }
+
+    @Test
+    public void successReusable_copiesQueuedPayload() {
+        QueuingEventSink sink = new QueuingEventSink();
+        long[] buffered = {0, 1000};
+        Map<String, Object> event = event("bufferingUpdate", buffered);
+        sink.successReusable(event);
+        buffered[1] = 5000;
+        event.put("event", "progress");
+        sink.setDelegate(delegate);
+
+        Map<?, ?> delivered = (Map<?, ?>) delegate.events.get(0);
+        assertEquals("bufferingUpdate", delivered.get("event"));
+        assertArrayEquals(new long[] {0, 1000}, (long[]) delivered.get("value"));
+    }
+
+    private static final class RecordingSink implements EventChannel.EventSink {
+        final List<Object> events = new ArrayList<>();
+
+        @Override
+        public void success(Object event) {
+            events.add(event);
+        }
+
+        @Override
+        public void error(String code, String message, Object details) {
+            events.add("error " + code);
+        }
+
+        @Override
+        public void endOfStream() {
+            events.add("endOfStream");
+        }
+    }
+}
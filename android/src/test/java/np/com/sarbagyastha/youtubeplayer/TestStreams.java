@@ -0,0 +1,37 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.util.SparseArray;
+
+import at.huber.youtubeExtractor.Format;
+import at.huber.youtubeExtractor.YtFile;
+
+/** Builds extraction results without running the extractor. */
+final class TestStreams {
+
+    private TestStreams() {}
+
+    static YtFile ytFile(int itag, String url) {
+        Format format = mock(Format.class);
+        when(format.getItag()).thenReturn(itag);
+        YtFile ytFile = mock(YtFile.class);
+        when(ytFile.getFormat()).thenReturn(format);
+        when(ytFile.getUrl()).thenReturn(url);
+        return ytFile;
+    }
+
+    /** Returns streams for {@code itags} whose URLs carry no expire parameter. */
+    static SparseArray<YtFile> ytFiles(int... itags) {
+        SparseArray<YtFile> ytFiles = new SparseArray<>();
+        for (int itag : itags) {
+            ytFiles.put(itag, ytFile(itag, "https://r1.googlevideo.com/videoplayback?itag=" + itag));
+        }
+        return ytFiles;
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Sarbagya Dhaubanjar. All rights reserved.
+// Use of this source code is governed by a MIT license that can be found
+// in the LICENSE file.
+
+package np.com.sarbagyastha.youtubeplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Collections;
+
+// SystemClock.sleep advances Robolectric's clock without waiting.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class UrlRefresherTest {
+
+    private static final String URL = "https://r1.googlevideo.com/videoplayback?itag=22";
+
+    private static final String EXPIRED_URL = "https://r1.googlevideo.com/videoplayback?itag=22&expire=1";
+
+    private static ExoPlaybackException httpError(int responseCode) {
+        DataSpec dataSpec = new DataSpec(Uri.parse(URL));
+        return ExoPlaybackException.createForSource(new HttpDataSource.InvalidResponseCodeException(
+                responseCode, Collections.emptyMap(), dataSpec));
+    }
+
+    @Test
+    public void isExpiryError_forbiddenAndGone() {
+        assertTrue(UrlRefresher.isExpiryError(httpError(403), URL));
+        assertTrue(UrlRefresher.isExpiryError(httpError(410), URL));
+        assertFalse(UrlRefresher.isExpiryError(httpError(404), URL));
+    }
+
+    @Test
+    public void isExpiryError_anyHttpErrorPastExpiry() {
+        assertTrue(UrlRefresher.isExpiryError(httpError(404), EXPIRED_URL));
+        assertTrue(UrlRefresher.isExpiryError(
+                ExoPlaybackException.createForSource(new HttpDataSource.HttpDataSourceException(
+                        "Connection reset",
+                        new DataSpec(Uri.parse(EXPIRED_URL)),
+                        HttpDataSource.HttpDataSourceException.TYPE_READ)),
+                EXPIRED_URL));
+    }
+
+    @Test
+    public void isExpiryError_ignoresOtherErrors() {
+        assertFalse(UrlRefresher.isExpiryError(
+                ExoPlaybackException.createForSource(new IOException("Malformed")), EXPIRED_URL));
+        assertFalse(UrlRefresher.isExpiryError(
+                ExoPlaybackException.createForRenderer(new Exception("Decoder"), 0), EXPIRED_URL));
+    }
+
+    @Test
+    public void tryStart_allowsThreeRefreshesPerMinute() {
+        UrlRefresher refresher = new UrlRefresher();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(refresher.tryStart());
+            refresher.onRefreshed();
+        }
+        assertFalse(refresher.tryStart());
+
+        SystemClock.sleep(61 * 1000);
+        assertTrue(refresher.tryStart());
+        assertEquals(3, refresher.getRefreshCount());
+    }
+
+    @Test
+    public void tryStart_waitsForRunningRefresh() {
+        UrlRefresher refresher = new UrlRefresher();
+        assertTrue(refresher.tryStart());
+        assertFalse(refresher.tryStart());
+        refresher.onFailed();
+        assertTrue(refresher.tryStart());
+        refresher.onRefreshed();
+
+        assertEquals(1, refresher.getStats().get("urlRefreshes"));
+        assertEquals(1, refresher.getStats().get("urlRefreshFailures"));
+    }
+}
@@ -37,6 +37,94 @@ enum YoutubePlayerMode {
   NO_CONTROLS,
 }
 
+/// Describes how far ahead a player buffers.
+///
+/// Use one of the presets, or [BufferProfile.custom] to override any of the
+/// preset values. Durations are in milliseconds.
+class BufferProfile {
+  /// ExoPlayer's default buffering.
+  static const BufferProfile standard = BufferProfile._('default');
+
+  /// Starts playback early and keeps a short buffer, e.g. for live streams.
+  static const BufferProfile lowLatency = BufferProfile._('lowLatency');
+
+  /// Keeps a short buffer capped at a few megabytes, e.g. for feeds with many
+  /// players or low-end devices.
+  static const BufferProfile lowMemory = BufferProfile._('lowMemory');
+
+  /// Keeps a long buffer to ride out unstable networks.
+  static const BufferProfile smooth = BufferProfile._('smooth');
+
+  /// Name of the preset the other values override.
+  final String preset;
+
+  /// Minimum duration of media the player tries to keep buffered.
+  final int minBufferMs;
+
+  /// Maximum duration of media the player buffers.
+  final int maxBufferMs;
+
+  /// Duration of media that must be buffered to start playback.
+  final int bufferForPlaybackMs;
+
+  /// Duration of media that must be buffered to resume after a rebuffer.
+  final int bufferForPlaybackAfterRebufferMs;
+
+  /// Size in bytes the buffer is capped at.
+  final int targetBufferBytes;
+
+  /// Whether the duration thresholds take precedence over [targetBufferBytes].
+  final bool prioritizeTimeOverSizeThresholds;
+
+  const BufferProfile._(this.preset)
+      : minBufferMs = null,
+        maxBufferMs = null,
+        bufferForPlaybackMs = null,
+        bufferForPlaybackAfterRebufferMs = null,
+        targetBufferBytes = null,
+        prioritizeTimeOverSizeThresholds = null;
+
+  /// Values left null are taken from [base].
+  BufferProfile.custom({
+    BufferProfile base = standard,
+    this.minBufferMs,
+    this.maxBufferMs,
+    this.bufferForPlaybackMs,
+    this.bufferForPlaybackAfterRebufferMs,
+    this.targetBufferBytes,
+    this.prioritizeTimeOverSizeThresholds,
+  }) : preset = base.preset;
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'preset': preset,
+        'minBufferMs': minBufferMs,
+        'maxBufferMs': maxBufferMs,
+        'bufferForPlaybackMs': bufferForPlaybackMs,
+        'bufferForPlaybackAfterRebufferMs': bufferForPlaybackAfterRebufferMs,
+        'targetBufferBytes': targetBufferBytes,
+        'prioritizeTimeOverSizeThresholds': prioritizeTimeOverSizeThresholds,
+      };
+}
+
+String _qualityName(YoutubeQuality quality) {
+  switch (quality) {
+    case YoutubeQuality.LOWEST:
+      return '144p';
+    case YoutubeQuality.LOW:
+      return '240p';
+    case YoutubeQuality.MEDIUM:
+      return '360p';
+    case YoutubeQuality.HIGH:
+      return '480p';
+    case YoutubeQuality.HD:
+      return '720p';
+    case YoutubeQuality.FHD:
+      return '1080p';
+    default:
+      return "Invalid Quality";
+  }
+}
+
 final MethodChannel _channel =
     const MethodChannel('sarbagyastha.com.np/youtubePlayer')
       ..invokeMethod('init');
@@ -71,6 +159,10 @@ class VideoPlayerValue {
     this.isLooping = false,
     this.isBuffering = false,
     this.volume = 1.0,
+    this.quality,
+    this.queueIndex,
+    this.liveLatency,
+    this.isAudioOnly = false,
     this.errorDescription,
   });
 
@@ -102,6 +194,24 @@ class VideoPlayerValue {
   /// The current volume of the playback.
   final double volume;
 
+  /// The quality currently played, e.g. "720p".
+  ///
+  /// Is null until known. Changes when an adaptive player switches streams.
+  final String quality;
+
+  /// The index of the queue item being played.
+  ///
+  /// Is null unless a queue was set with [VideoPlayerController.setQueue].
+  final int queueIndex;
+
+  /// How far playback is behind the live edge.
+  ///
+  /// Is null unless a live stream is played.
+  final Duration liveLatency;
+
+  /// True if only the audio stream is played.
+  final bool isAudioOnly;
+
   /// A description of the error if present.
   ///
   /// If [hasError] is false this is [null].
@@ -127,6 +237,10 @@ class VideoPlayerValue {
     bool isLooping,
     bool isBuffering,
     double volume,
+    String quality,
+    int queueIndex,
+    Duration liveLatency,
+    bool isAudioOnly,
     String errorDescription,
   }) {
     return VideoPlayerValue(
@@ -138,6 +252,10 @@ class VideoPlayerValue {
       isLooping: isLooping ?? this.isLooping,
       isBuffering: isBuffering ?? this.isBuffering,
       volume: volume ?? this.volume,
+      quality: quality ?? this.quality,
+      queueIndex: queueIndex ?? this.queueIndex,
+      liveLatency: liveLatency ?? this.liveLatency,
+      isAudioOnly: isAudioOnly ?? this.isAudioOnly,
       errorDescription: errorDescription ?? this.errorDescription,
     );
   }
@@ -153,6 +271,10 @@ class VideoPlayerValue {
         'isLooping: $isLooping, '
         'isBuffering: $isBuffering'
         'volume: $volume, '
+        'quality: $quality, '
+        'queueIndex: $queueIndex, '
+        'liveLatency: $liveLatency, '
+        'isAudioOnly: $isAudioOnly, '
         'errorDescription: $errorDescription)';
   }
 }
@@ -177,17 +299,70 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
   /// package and null otherwise.
   VideoPlayerController.asset(this.dataSource, {this.package})
       : dataSourceType = DataSourceType.asset,
+        videoId = null,
+        quality = null,
+        isLive = false,
+        startAt = Duration.zero,
+        maxCacheSize = 0,
+        bufferProfile = BufferProfile.standard,
+        adaptive = false,
+        liveTargetOffset = Duration.zero,
+        preloadVideoIds = const <String>[],
+        audioOnly = false,
         super(VideoPlayerValue(duration: null));
 
-  /// Constructs a [VideoPlayerController] playing a video from obtained from
-  /// the network.
+  /// Constructs a [VideoPlayerController] playing the YouTube video [videoId].
   ///
-  /// The URI for the video is given by the [dataSource] argument and must not be
-  /// null.
-  VideoPlayerController.network(this.dataSource)
-      : dataSourceType = DataSourceType.network,
+  /// [quality], e.g. "720p", is the highest quality played. Playback starts at
+  /// [startAt], or at the live edge if [isLive] is true.
+  ///
+  /// If [maxCacheSize] is greater than zero, downloaded media is kept in a disk
+  /// cache of that many bytes shared by all players.
+  ///
+  /// [bufferProfile] sets how far ahead the player buffers.
+  ///
+  /// If [adaptive] is true, the stream quality follows the available bandwidth,
+  /// up to [quality].
+  ///
+  /// For live streams, a [liveTargetOffset] above zero keeps playback that far
+  /// behind the live edge by playing slightly faster or slower.
+  ///
+  /// [preloadVideoIds] are the videos likely played next. They are preloaded
+  /// once this one is created.
+  ///
+  /// If [audioOnly] is true, only the audio stream is played and no texture is
+  /// created, so [VideoPlayer] shows nothing.
+  VideoPlayerController.youtube(this.videoId,
+      {this.quality = '720p',
+      this.isLive = false,
+      this.startAt = Duration.zero,
+      this.maxCacheSize = 0,
+      this.bufferProfile = BufferProfile.standard,
+      this.adaptive = false,
+      this.liveTargetOffset = Duration.zero,
+      this.preloadVideoIds = const <String>[],
+      this.audioOnly = false})
+      : dataSource = videoId,
+        dataSourceType = DataSourceType.network,
         package = null,
-        super(VideoPlayerValue(duration: null));
+        super(VideoPlayerValue(duration: null, isAudioOnly: audioOnly));
+
+  /// Constructs a [VideoPlayerController] from a [dataSource] of the form
+  /// `<videoId>sarbagya<quality>sarbagya<isLive>`.
+  ///
+  /// Prefer [VideoPlayerController.youtube], which takes these as arguments.
+  VideoPlayerController.network(String dataSource,
+      {int maxCacheSize = 0,
+      BufferProfile bufferProfile = BufferProfile.standard,
+      bool adaptive = false,
+      Duration liveTargetOffset = Duration.zero})
+      : this.youtube(_legacyPart(dataSource, 0),
+            quality: _legacyPart(dataSource, 1),
+            isLive: _legacyPart(dataSource, 2) == 'true',
+            maxCacheSize: maxCacheSize,
+            bufferProfile: bufferProfile,
+            adaptive: adaptive,
+            liveTargetOffset: liveTargetOffset);
 
   /// Constructs a [VideoPlayerController] playing a video from a file.
   ///
@@ -196,6 +371,16 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
   VideoPlayerController.file(File file)
       : dataSource = 'file://${file.path}',
         dataSourceType = DataSourceType.file,
+        videoId = null,
+        quality = null,
+        isLive = false,
+        startAt = Duration.zero,
+        maxCacheSize = 0,
+        bufferProfile = BufferProfile.standard,
+        adaptive = false,
+        liveTargetOffset = Duration.zero,
+        preloadVideoIds = const <String>[],
+        audioOnly = false,
         package = null,
         super(VideoPlayerValue(duration: null));
 
@@ -207,10 +392,42 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
   final DataSourceType dataSourceType;
 
   final String package;
-  Timer _timer;
+
+  /// The YouTube video played.
+  final String videoId;
+
+  /// The highest quality played, e.g. "720p".
+  final String quality;
+
+  /// Whether [videoId] is a live stream.
+  final bool isLive;
+
+  /// Where playback starts.
+  final Duration startAt;
+
+  /// Size in bytes of the shared disk cache for media, or 0 to disable it.
+  final int maxCacheSize;
+
+  /// How far ahead the player buffers.
+  final BufferProfile bufferProfile;
+
+  /// Whether the stream quality follows the available bandwidth.
+  final bool adaptive;
+
+  /// How far behind the live edge a live stream is kept, or zero to only
+  /// report [VideoPlayerValue.liveLatency].
+  final Duration liveTargetOffset;
+
+  /// Videos preloaded once this one is created.
+  final List<String> preloadVideoIds;
+
+  /// Whether the player was created without a texture, playing audio only.
+  final bool audioOnly;
   bool _isDisposed = false;
   Completer<void> _creatingCompleter;
   StreamSubscription<dynamic> _eventSubscription;
+  final StreamController<Map<dynamic, dynamic>> _metricsController =
+      StreamController<Map<dynamic, dynamic>>.broadcast();
   _VideoAppLifeCycleObserver _lifeCycleObserver;
 
   @visibleForTesting
@@ -229,7 +446,18 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
         };
         break;
       case DataSourceType.network:
-        dataSourceDescription = <String, dynamic>{'uri': dataSource};
+        dataSourceDescription = <String, dynamic>{
+          'videoId': videoId,
+          'quality': quality,
+          'live': isLive,
+          'startPositionMs': startAt.inMilliseconds,
+          'maxCacheSize': maxCacheSize,
+          'bufferProfile': bufferProfile.toMap(),
+          'adaptive': adaptive,
+          'liveTargetOffsetMs': liveTargetOffset.inMilliseconds,
+          'preloadVideoIds': preloadVideoIds,
+          'audioOnly': audioOnly,
+        };
         break;
       case DataSourceType.file:
         dataSourceDescription = <String, dynamic>{'uri': dataSource};
@@ -246,14 +474,6 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
     }
     final Completer<void> initializingCompleter = Completer<void>();
 
-    DurationRange toDurationRange(dynamic value) {
-      final List<dynamic> pair = value;
-      return DurationRange(
-        Duration(milliseconds: pair[0]),
-        Duration(milliseconds: pair[1]),
-      );
-    }
-
     void eventListener(dynamic event) {
       final Map<dynamic, dynamic> map = event;
       switch (map['event']) {
@@ -262,6 +482,7 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
             duration: Duration(milliseconds: map['duration']),
             size: Size(map['width']?.toDouble() ?? 0.0,
                 map['height']?.toDouble() ?? 0.0),
+            quality: map['quality'],
           );
           initializingCompleter.complete(null);
           _applyLooping();
@@ -270,27 +491,65 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
           break;
         case 'completed':
           value = value.copyWith(isPlaying: false, position: value.duration);
-          _timer?.cancel();
           break;
-        case 'bufferingUpdate':
-          final List<dynamic> values = map['values'];
+        case 'progress':
           value = value.copyWith(
-            buffered: values.map<DurationRange>(toDurationRange).toList(),
+            position: Duration(milliseconds: map['position']),
+            isBuffering: map['isBuffering'],
           );
           break;
+        case 'bufferingUpdate':
+          // Flat list of start and end pairs in milliseconds.
+          final List<int> values = map['values'];
+          final List<DurationRange> buffered = <DurationRange>[];
+          for (int i = 0; i + 1 < values.length; i += 2) {
+            buffered.add(DurationRange(
+              Duration(milliseconds: values[i]),
+              Duration(milliseconds: values[i + 1]),
+            ));
+          }
+          value = value.copyWith(buffered: buffered);
+          break;
         case 'bufferingStart':
           value = value.copyWith(isBuffering: true);
           break;
         case 'bufferingEnd':
           value = value.copyWith(isBuffering: false);
           break;
+        case 'qualityChanged':
+          value = value.copyWith(quality: map['quality']);
+          break;
+        case 'demoted':
+          value = value.copyWith(
+            isPlaying: false,
+            isBuffering: false,
+            position: Duration(milliseconds: map['position']),
+          );
+          break;
+        case 'audioOnlyChanged':
+          value = value.copyWith(isAudioOnly: map['audioOnly']);
+          break;
+        case 'liveLatency':
+          value = value.copyWith(
+            liveLatency: Duration(milliseconds: map['latencyMs']),
+          );
+          break;
+        case 'metrics':
+          _metricsController.add(map);
+          break;
+        case 'queueIndexChanged':
+          final int duration = map['duration'];
+          value = value.copyWith(
+            queueIndex: map['index'],
+            duration: duration > 0 ? Duration(milliseconds: duration) : null,
+          );
+          break;
       }
     }
 
     void errorListener(Object obj) {
       final PlatformException e = obj;
       value = VideoPlayerValue.erroneous(e.message);
-      _timer?.cancel();
     }
 
     _eventSubscription = _eventChannelFor(_textureId)
@@ -299,6 +558,11 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
     return initializingCompleter.future;
   }
 
+  static String _legacyPart(String dataSource, int index) {
+    final List<String> parts = dataSource.split('sarbagya');
+    return index < parts.length ? parts[index] : null;
+  }
+
   EventChannel _eventChannelFor(int textureId) {
     return EventChannel(
         'sarbagyastha.com.np/youtubePlayer/videoEvents$textureId');
@@ -310,8 +574,8 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
       await _creatingCompleter.future;
       if (!_isDisposed) {
         _isDisposed = true;
-        _timer?.cancel();
         await _eventSubscription?.cancel();
+        await _metricsController.close();
         // https://github.com/flutter/flutter/issues/26431
         // ignore: strong_mode_implicit_dynamic_method
         await _channel.invokeMethod(
@@ -363,21 +627,7 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
         'play',
         <String, dynamic>{'textureId': _textureId},
       );
-      _timer = Timer.periodic(
-        const Duration(milliseconds: 500),
-        (Timer timer) async {
-          if (_isDisposed) {
-            return;
-          }
-          final Duration newPosition = await position;
-          if (_isDisposed) {
-            return;
-          }
-          value = value.copyWith(position: newPosition);
-        },
-      );
     } else {
-      _timer?.cancel();
       // https://github.com/flutter/flutter/issues/26431
       // ignore: strong_mode_implicit_dynamic_method
       await _channel.invokeMethod(
@@ -432,6 +682,183 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
     value = value.copyWith(position: moment);
   }
 
+  /// Sets how often the platform pushes the playback position while the
+  /// video is playing or loading. The position is only sent when it changed.
+  ///
+  /// Default = 500 milliseconds
+  Future<void> setPositionUpdateInterval(Duration interval) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('setPositionUpdateInterval', <String, dynamic>{
+      'textureId': _textureId,
+      'intervalMs': interval.inMilliseconds,
+    });
+  }
+
+  /// Playback quality metrics of [this]: time to first frame split into
+  /// `extractionMs`, `prepareMs` and `renderMs`, `rebufferCount`,
+  /// `rebufferMs`, `droppedFrames`, `bytesLoaded`, `bitrateEstimate`,
+  /// `formatChanges` and the current video format, and `urlRefreshes` of
+  /// expired stream URLs.
+  ///
+  /// Times that did not happen yet are -1.
+  Future<Map<dynamic, dynamic>> get metrics async {
+    if (_isDisposed) {
+      return null;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    return await _channel.invokeMethod(
+      'metrics',
+      <String, dynamic>{'textureId': _textureId},
+    );
+  }
+
+  /// [metrics] pushed by the platform every interval set with
+  /// [setMetricsInterval].
+  Stream<Map<dynamic, dynamic>> get metricsStream => _metricsController.stream;
+
+  /// Sets how often [metrics] are pushed to [metricsStream], or stops pushing
+  /// them for [Duration.zero].
+  ///
+  /// Default = [Duration.zero]
+  Future<void> setMetricsInterval(Duration interval) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('setMetricsInterval', <String, dynamic>{
+      'textureId': _textureId,
+      'intervalMs': interval.inMilliseconds,
+    });
+  }
+
+  /// Switches to [quality], e.g. "720p", keeping the player and position.
+  ///
+  /// The switch is reported by [VideoPlayerValue.quality] once the new stream
+  /// renders.
+  Future<void> setQuality(String quality) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('setQuality', <String, dynamic>{
+      'textureId': _textureId,
+      'quality': quality,
+    });
+  }
+
+  /// Plays [videoIds] one after another, starting at [startIndex].
+  ///
+  /// Items are extracted shortly before they are played and follow each other
+  /// without a gap. [VideoPlayerValue.queueIndex] tells the item being played.
+  Future<void> setQueue(List<String> videoIds, {int startIndex = 0}) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('setQueue', <String, dynamic>{
+      'textureId': _textureId,
+      'videoIds': videoIds,
+      'startIndex': startIndex,
+    });
+  }
+
+  /// Inserts [videoId] into the queue at [index], or appends it if [index] is
+  /// null.
+  Future<void> addToQueue(String videoId, {int index}) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('addToQueue', <String, dynamic>{
+      'textureId': _textureId,
+      'videoId': videoId,
+      'index': index,
+    });
+  }
+
+  /// Removes the queue item at [index].
+  Future<void> removeFromQueue(int index) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('removeFromQueue', <String, dynamic>{
+      'textureId': _textureId,
+      'index': index,
+    });
+  }
+
+  /// Starts playing the queue item at [index].
+  Future<void> skipTo(int index) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('skipTo', <String, dynamic>{
+      'textureId': _textureId,
+      'index': index,
+    });
+  }
+
+  /// Keeps a live stream [offset] behind the live edge, or only reports
+  /// [VideoPlayerValue.liveLatency] for [Duration.zero].
+  Future<void> setLiveTargetOffset(Duration offset) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('setLiveTargetOffset', <String, dynamic>{
+      'textureId': _textureId,
+      'targetOffsetMs': offset.inMilliseconds,
+    });
+  }
+
+  /// Plays only the audio stream if [audioOnly] is true, e.g. while the app is
+  /// in the background, or the video again if false, at the same position.
+  ///
+  /// Audio-only playback fetches no video and releases the video decoder. A
+  /// controller created with `audioOnly: true` has no texture and cannot
+  /// return to video.
+  Future<void> setAudioOnly(bool audioOnly) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('setAudioOnly', <String, dynamic>{
+      'textureId': _textureId,
+      'audioOnly': audioOnly,
+    });
+  }
+
+  /// Tells the plugin whether [this] is on screen.
+  ///
+  /// Off-screen players stop buffering and are the first to release their
+  /// decoder when too many players are active.
+  Future<void> setVisible(bool visible) async {
+    if (_isDisposed) {
+      return;
+    }
+    // https://github.com/flutter/flutter/issues/26431
+    // ignore: strong_mode_implicit_dynamic_method
+    await _channel.invokeMethod('setVisible', <String, dynamic>{
+      'textureId': _textureId,
+      'visible': visible,
+    });
+  }
+
   /// Sets the audio volume of [this].
   ///
   /// [volume] indicates a value between 0.0 (silent) and 1.0 (full volume) on a
@@ -442,6 +869,51 @@ class VideoPlayerController extends ValueNotifier<VideoPlayerValue> {
   }
 }
 
+/// A command for one player, run together with others by [YoutubePlayer.batch].
+class BatchCommand {
+  BatchCommand._(this.controller, this.method,
+      [this.arguments = const <String, dynamic>{}, this._apply]);
+
+  BatchCommand.play(VideoPlayerController controller)
+      : this._(controller, 'play', const <String, dynamic>{},
+            (c) => c.value = c.value.copyWith(isPlaying: true));
+
+  BatchCommand.pause(VideoPlayerController controller)
+      : this._(controller, 'pause', const <String, dynamic>{},
+            (c) => c.value = c.value.copyWith(isPlaying: false));
+
+  BatchCommand.seekTo(VideoPlayerController controller, Duration moment)
+      : this._(controller, 'seekTo',
+            <String, dynamic>{'location': moment.inMilliseconds});
+
+  BatchCommand.setVolume(VideoPlayerController controller, double volume)
+      : this._(
+            controller,
+            'setVolume',
+            <String, dynamic>{'volume': volume.clamp(0.0, 1.0)},
+            (c) => c.value = c.value.copyWith(volume: volume.clamp(0.0, 1.0)));
+
+  BatchCommand.setLooping(VideoPlayerController controller, bool looping)
+      : this._(controller, 'setLooping', <String, dynamic>{'looping': looping},
+            (c) => c.value = c.value.copyWith(isLooping: looping));
+
+  BatchCommand.position(VideoPlayerController controller)
+      : this._(controller, 'position');
+
+  final VideoPlayerController controller;
+  final String method;
+  final Map<String, dynamic> arguments;
+
+  /// Updates the value of [controller] once the command succeeded.
+  final void Function(VideoPlayerController controller) _apply;
+
+  Map<String, dynamic> _toMap() => <String, dynamic>{
+        'method': method,
+        'textureId': controller._textureId,
+        'args': arguments,
+      };
+}
+
 class _VideoAppLifeCycleObserver extends Object with WidgetsBindingObserver {
   _VideoAppLifeCycleObserver(this._controller);
 
@@ -523,7 +995,10 @@ class _VideoPlayerState extends State<VideoPlayer> {
 
   @override
   Widget build(BuildContext context) {
-    return _textureId == null ? Container() : Texture(textureId: _textureId);
+    // Audio-only players have a negative id and no texture.
+    return _textureId == null || _textureId < 0
+        ? Container()
+        : Texture(textureId: _textureId);
   }
 }
 
@@ -812,6 +1287,29 @@ class YoutubePlayer extends StatefulWidget {
   /// Default = false
   final bool loop;
 
+  /// Size in bytes of the disk cache used for replays and seeks.
+  /// The cache is shared by all players and sized by the first one enabling it.
+  ///
+  /// Default = 0 (disabled)
+  final int mediaCacheSize;
+
+  /// How far ahead the player buffers.
+  ///
+  /// Default = [BufferProfile.standard]
+  final BufferProfile bufferProfile;
+
+  /// If set to true, the stream quality follows the available bandwidth, with
+  /// [quality] as the highest quality played.
+  ///
+  /// Default = false
+  final bool adaptiveQuality;
+
+  /// For live streams, how far behind the live edge playback is kept. Zero
+  /// keeps ExoPlayer's default start position and speed.
+  ///
+  /// Default = Duration.zero
+  final Duration liveTargetOffset;
+
   YoutubePlayer({
     @required this.source,
     @required this.context,
@@ -836,6 +1334,10 @@ class YoutubePlayer extends StatefulWidget {
     this.hideShareButton = false,
     this.reactToOrientationChange = true,
     this.loop = false,
+    this.mediaCacheSize = 0,
+    this.bufferProfile = BufferProfile.standard,
+    this.adaptiveQuality = false,
+    this.liveTargetOffset = Duration.zero,
   }) : assert(
             (width ?? MediaQuery.of(context).size.width) <=
                 MediaQuery.of(context).size.width,
@@ -856,6 +1358,163 @@ class YoutubePlayer extends StatefulWidget {
       (await _channel.invokeMethod('isKeptOn')) as bool;
 
   static Future keepOn(bool on) => _channel.invokeMethod('keepOn', {"on": on});
+
+  /// Sets how many extracted videos are kept in memory for quick replays
+  /// and quality changes.
+  ///
+  /// Default = 32
+  static Future setExtractionCacheSize(int maxEntries) => _channel
+      .invokeMethod('setExtractionCacheSize', {"maxEntries": maxEntries});
+
+  /// Returns size, hits, misses and evictions of the extraction cache.
+  static Future<Map<dynamic, dynamic>> get extractionCacheStats async =>
+      (await _channel.invokeMethod('extractionCacheStats'))
+          as Map<dynamic, dynamic>;
+
+  /// Returns the size of the disk media cache and the bytes read from it.
+  static Future<Map<dynamic, dynamic>> get mediaCacheStats async =>
+      (await _channel.invokeMethod('mediaCacheStats')) as Map<dynamic, dynamic>;
+
+  /// Prepares players for [videoIds] in the background, so that a later
+  /// [YoutubePlayer] showing one of them at the same [quality] starts at once.
+  static Future preload(List<String> videoIds, YoutubeQuality quality,
+          {int mediaCacheSize = 0}) =>
+      _channel.invokeMethod('preload', {
+        "videoIds": videoIds,
+        "quality": _qualityName(quality),
+        "maxCacheSize": mediaCacheSize,
+      });
+
+  /// Limits how many videos are kept preloaded, how many are resolved at
+  /// the same time and how much of each is buffered ahead.
+  ///
+  /// Default = 3 videos, 2 at a time, 5 seconds each
+  static Future setPreloadLimits({
+    int maxVideos = 3,
+    int maxConcurrent = 2,
+    Duration bufferDuration = const Duration(seconds: 5),
+  }) =>
+      _channel.invokeMethod('setPreloadLimits', {
+        "maxEntries": maxVideos,
+        "maxConcurrent": maxConcurrent,
+        "durationMs": bufferDuration.inMilliseconds,
+      });
+
+  /// Returns the number of warm, pending and in-flight preloads along with
+  /// their hit and miss counts.
+  static Future<Map<dynamic, dynamic>> get preloadStats async =>
+      (await _channel.invokeMethod('preloadStats')) as Map<dynamic, dynamic>;
+
+  /// Sets how many stopped players are kept for reuse by the next videos.
+  ///
+  /// Default = 2
+  static Future setPlayerPoolSize(int maxSize) =>
+      _channel.invokeMethod('setPlayerPoolSize', {"maxSize": maxSize});
+
+  /// Sets how many videos are resolved in parallel and how long a single
+  /// resolution may take before it fails.
+  ///
+  /// Default = 3 in parallel, 20 seconds
+  static Future setResolverLimits({
+    int poolSize = 3,
+    Duration timeout = const Duration(seconds: 20),
+  }) =>
+      _channel.invokeMethod('setResolverLimits', {
+        "poolSize": poolSize,
+        "timeoutMs": timeout.inMilliseconds,
+      });
+
+  /// Returns queue depth, active and pending resolutions, and counts of
+  /// completed, failed, timed out and cancelled ones.
+  static Future<Map<dynamic, dynamic>> get resolverStats async =>
+      (await _channel.invokeMethod('resolverStats')) as Map<dynamic, dynamic>;
+
+  /// Returns how much of the watch page the last live stream lookup read and
+  /// how long it took to find the manifest.
+  static Future<Map<dynamic, dynamic>> get liveProbeStats async =>
+      (await _channel.invokeMethod('liveProbeStats')) as Map<dynamic, dynamic>;
+
+  /// Returns size, hit rate and evictions of the player pool.
+  static Future<Map<dynamic, dynamic>> get playerPoolStats async =>
+      (await _channel.invokeMethod('playerPoolStats'))
+          as Map<dynamic, dynamic>;
+
+  /// Runs [commands] in a single platform channel call.
+  ///
+  /// Returns one result per command, in order. A failed command returns a
+  /// [PlatformException] in its place instead of failing the others.
+  static Future<List<dynamic>> batch(List<BatchCommand> commands) async {
+    final List<dynamic> replies = await _channel.invokeMethod('batch', {
+      "commands": commands.map((command) => command._toMap()).toList(),
+    });
+    final List<dynamic> results = <dynamic>[];
+    for (int i = 0; i < commands.length; i++) {
+      final Map<dynamic, dynamic> reply = replies[i];
+      if (reply.containsKey('error')) {
+        results.add(PlatformException(
+            code: reply['error'], message: reply['message']));
+      } else {
+        if (commands[i]._apply != null) {
+          commands[i]._apply(commands[i].controller);
+        }
+        results.add(reply['result']);
+      }
+    }
+    return results;
+  }
+
+  /// Returns the positions of [controllers], or of all players if null, in a
+  /// single platform channel call, keyed by texture id.
+  static Future<Map<int, Duration>> positions(
+      [List<VideoPlayerController> controllers]) async {
+    final List<dynamic> replies = await _channel.invokeMethod('batch', {
+      "commands": [
+        {
+          "method": "positions",
+          "textureIds": controllers
+              ?.map((controller) => controller._textureId)
+              ?.toList(),
+        }
+      ],
+    });
+    final Map<dynamic, dynamic> positions = replies[0]['result'];
+    return positions.map<int, Duration>((dynamic textureId, dynamic position) =>
+        MapEntry<int, Duration>(textureId, Duration(milliseconds: position)));
+  }
+
+  /// Sets how many players may hold a decoder at the same time.
+  ///
+  /// Players over the limit are paused and release their decoder, invisible
+  /// ones first (see [VideoPlayerController.setVisible]). They resume from the
+  /// same position when used again.
+  ///
+  /// Default = 4
+  static Future<void> setMaxActivePlayers(int maxActive) =>
+      _channel.invokeMethod('setMaxActivePlayers', {"maxActive": maxActive});
+
+  /// Returns the active player limit, demotion counts and, for every player,
+  /// its state, buffered duration, allocated buffer bytes and decoders in use.
+  static Future<Map<dynamic, dynamic>> get governorStats async =>
+      (await _channel.invokeMethod('governorStats')) as Map<dynamic, dynamic>;
+
+  /// Returns how often memory was trimmed and the last trim level and stage.
+  ///
+  /// Under memory pressure the plugin drops preloaded players, idle players and
+  /// extraction results and buffers less. Under heavy pressure, or in the
+  /// background, paused players also release their decoders. Each player is
+  /// sent a `memoryTrimmed` event.
+  static Future<Map<dynamic, dynamic>> get memoryTrimStats async =>
+      (await _channel.invokeMethod('memoryTrimStats'))
+          as Map<dynamic, dynamic>;
+
+  /// Returns the current bandwidth estimate in bits per second, whether it
+  /// was measured, the current network type and the estimates saved for
+  /// `wifi`, `cellular` and `other` networks.
+  ///
+  /// The estimate is shared by all players and saved across sessions. Once
+  /// one was measured, the first stream of a video is capped to it.
+  static Future<Map<dynamic, dynamic>> get bandwidthStats async =>
+      (await _channel.invokeMethod('bandwidthStats')) as Map<dynamic, dynamic>;
 }
 
 class _YoutubePlayerState extends State<YoutubePlayer>
@@ -885,8 +1544,14 @@ class _YoutubePlayerState extends State<YoutubePlayer>
       videoId = widget.source;
     }
     if (videoId != null)
-      _videoController = VideoPlayerController.network(
-          "${videoId}sarbagya${_selectedQuality}sarbagya${widget.isLive}");
+      _videoController = VideoPlayerController.youtube(videoId,
+          quality: _selectedQuality,
+          isLive: widget.isLive,
+          startAt: widget.startAt ?? Duration.zero,
+          maxCacheSize: widget.mediaCacheSize,
+          bufferProfile: widget.bufferProfile,
+          adaptive: widget.adaptiveQuality,
+          liveTargetOffset: widget.liveTargetOffset);
     if (controlsColor == null) {
       controlsColor = ControlsColor();
     } else {
@@ -940,7 +1605,6 @@ class _YoutubePlayerState extends State<YoutubePlayer>
         if (widget.startFullScreen) {
           _pushFullScreenWidget(context);
         }
-        if (widget.startAt != null) _videoController.seekTo(widget.startAt);
         _videoController.addListener(listener);
       },
     );
@@ -977,8 +1641,14 @@ class _YoutubePlayerState extends State<YoutubePlayer>
         _videoController.pause();
         videoId = getIdFromUrl(widget.source);
         if (videoId != null) {
-          _videoController = VideoPlayerController.network(
-              "${videoId}sarbagya${_selectedQuality}sarbagya${widget.isLive}");
+          _videoController = VideoPlayerController.youtube(videoId,
+              quality: _selectedQuality,
+              isLive: widget.isLive,
+              startAt: widget.startAt ?? Duration.zero,
+              maxCacheSize: widget.mediaCacheSize,
+              bufferProfile: widget.bufferProfile,
+              adaptive: widget.adaptiveQuality,
+              liveTargetOffset: widget.liveTargetOffset);
           initializeYTController();
         } else {
           widget.onError("Malformed Video ID or URL");
@@ -989,8 +1659,14 @@ class _YoutubePlayerState extends State<YoutubePlayer>
         _videoController.pause();
         videoId = widget.source;
         if (videoId != null) {
-          _videoController = VideoPlayerController.network(
-              "${videoId}sarbagya${_selectedQuality}sarbagya${widget.isLive}");
+          _videoController = VideoPlayerController.youtube(videoId,
+              quality: _selectedQuality,
+              isLive: widget.isLive,
+              startAt: widget.startAt ?? Duration.zero,
+              maxCacheSize: widget.mediaCacheSize,
+              bufferProfile: widget.bufferProfile,
+              adaptive: widget.adaptiveQuality,
+              liveTargetOffset: widget.liveTargetOffset);
           initializeYTController();
         }
       }
@@ -1075,25 +1751,12 @@ class _YoutubePlayerState extends State<YoutubePlayer>
                         });
                       },
                       qualityChangeCallback: (quality, position) {
-                        _videoController.pause();
                         if (mounted) {
                           setState(() {
                             _selectedQuality = quality;
-                            if (videoId != null)
-                              _videoController = VideoPlayerController.network(
-                                  "${videoId}sarbagya${_selectedQuality}sarbagya${widget.isLive}");
                           });
                         }
-                        _videoController.initialize().then((_) {
-                          _videoController.seekTo(position);
-                          _videoController.play();
-                          if (mounted) {
-                            setState(() {});
-                          }
-                        });
-                        if (widget.callbackController != null) {
-                          widget.callbackController(_videoController);
-                        }
+                        _videoController.setQuality(quality);
                       },
                       fullScreenCallback: () async {
                         await _pushFullScreenWidget(context);
@@ -1129,24 +1792,7 @@ class _YoutubePlayerState extends State<YoutubePlayer>
     );
   }
 
-  String qualityMapping(YoutubeQuality quality) {
-    switch (quality) {
-      case YoutubeQuality.LOWEST:
-        return '144p';
-      case YoutubeQuality.LOW:
-        return '240p';
-      case YoutubeQuality.MEDIUM:
-        return '360p';
-      case YoutubeQuality.HIGH:
-        return '480p';
-      case YoutubeQuality.HD:
-        return '720p';
-      case YoutubeQuality.FHD:
-        return '1080p';
-      default:
-        return "Invalid Quality";
-    }
-  }
+  String qualityMapping(YoutubeQuality quality) => _qualityName(quality);
 
   String getIdFromUrl(String url, [bool trimWhitespaces = true]) {
     if (url == null || url.length == 0) return null;
@@ -1,5 +1,7 @@
 import 'dart:async';
+import 'dart:typed_data';
 import 'package:flutter/foundation.dart';
+import 'package:flutter/services.dart';
 import 'package:flutter/widgets.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:flutter/material.dart';
@@ -24,6 +26,22 @@ class FakeController extends ValueNotifier<VideoPlayerValue>
   @override
   String get package => null;
   @override
+  String get videoId => null;
+  @override
+  String get quality => null;
+  @override
+  bool get isLive => false;
+  @override
+  Duration get startAt => Duration.zero;
+  @override
+  List<String> get preloadVideoIds => const <String>[];
+  @override
+  int get maxCacheSize => 0;
+  @override
+  BufferProfile get bufferProfile => BufferProfile.standard;
+  @override
+  bool get adaptive => false;
+  @override
   Future<Duration> get position async => value.position;
 
   @override
@@ -38,9 +56,282 @@ class FakeController extends ValueNotifier<VideoPlayerValue>
   Future<void> play() async {}
   @override
   Future<void> setLooping(bool looping) async {}
+  @override
+  Future<void> setPositionUpdateInterval(Duration interval) async {}
+  @override
+  Future<void> setQuality(String quality) async {}
+  @override
+  Future<void> setQueue(List<String> videoIds, {int startIndex = 0}) async {}
+  @override
+  Future<void> addToQueue(String videoId, {int index}) async {}
+  @override
+  Future<void> removeFromQueue(int index) async {}
+  @override
+  Future<void> skipTo(int index) async {}
+  @override
+  Future<void> setVisible(bool visible) async {}
+  @override
+  bool get audioOnly => false;
+  @override
+  Future<void> setAudioOnly(bool audioOnly) async {}
+  @override
+  Duration get liveTargetOffset => Duration.zero;
+  @override
+  Future<void> setLiveTargetOffset(Duration offset) async {}
+  @override
+  Future<Map<dynamic, dynamic>> get metrics async => <dynamic, dynamic>{};
+  @override
+  Stream<Map<dynamic, dynamic>> get metricsStream =>
+      Stream<Map<dynamic, dynamic>>.empty();
+  @override
+  Future<void> setMetricsInterval(Duration interval) async {}
+}
+
+const MethodChannel _pluginChannel =
+    MethodChannel('sarbagyastha.com.np/youtubePlayer');
+
+String _eventChannelName(int textureId) =>
+    'sarbagyastha.com.np/youtubePlayer/videoEvents$textureId';
+
+/// Answers listen and cancel on the event channel of [textureId].
+void _mockEventChannel(int textureId) {
+  BinaryMessages.setMockMessageHandler(
+    _eventChannelName(textureId),
+    (ByteData message) async =>
+        const StandardMethodCodec().encodeSuccessEnvelope(null),
+  );
+}
+
+/// Delivers [event] as if the platform player of [textureId] sent it.
+Future<void> _sendEvent(int textureId, Map<String, dynamic> event) async {
+  await BinaryMessages.handlePlatformMessage(
+    _eventChannelName(textureId),
+    const StandardMethodCodec().encodeSuccessEnvelope(event),
+    (ByteData reply) {},
+  );
+  await Future<void>.delayed(Duration.zero);
+}
+
+/// Initializes [controller] against the mocked channels.
+Future<VideoPlayerController> _initialize(
+    VideoPlayerController controller) async {
+  final Future<void> initializing = controller.initialize();
+  await Future<void>.delayed(Duration.zero);
+  await _sendEvent(controller.textureId, <String, dynamic>{
+    'event': 'initialized',
+    'duration': 10000,
+    'width': 1280,
+    'height': 720,
+    'quality': '720p',
+  });
+  await initializing;
+  return controller;
 }
 
 void main() {
+  TestWidgetsFlutterBinding.ensureInitialized();
+
+  final List<MethodCall> log = <MethodCall>[];
+  dynamic batchReply;
+
+  setUp(() {
+    log.clear();
+    int nextTextureId = 7;
+    _pluginChannel.setMockMethodCallHandler((MethodCall call) async {
+      log.add(call);
+      switch (call.method) {
+        case 'create':
+          return <String, dynamic>{'textureId': nextTextureId++};
+        case 'batch':
+          return batchReply;
+      }
+      return null;
+    });
+    _mockEventChannel(7);
+    _mockEventChannel(8);
+  });
+
+  tearDown(() {
+    _pluginChannel.setMockMethodCallHandler(null);
+  });
+
+  group('events', () {
+    test('progress', () async {
+      final VideoPlayerController controller =
+          await _initialize(VideoPlayerController.youtube('abcdefghijk'));
+      await _sendEvent(7, <String, dynamic>{
+        'event': 'progress',
+        'position': 1500,
+        'isBuffering': true,
+      });
+      expect(controller.value.position, const Duration(milliseconds: 1500));
+      expect(controller.value.isBuffering, isTrue);
+      await controller.dispose();
+    });
+
+    test('qualityChanged', () async {
+      final VideoPlayerController controller =
+          await _initialize(VideoPlayerController.youtube('abcdefghijk'));
+      expect(controller.value.quality, '720p');
+      await _sendEvent(7, <String, dynamic>{
+        'event': 'qualityChanged',
+        'quality': '480p',
+        'itag': 135,
+        'reason': 'adaptive',
+      });
+      expect(controller.value.quality, '480p');
+      await controller.dispose();
+    });
+
+    test('queueIndexChanged', () async {
+      final VideoPlayerController controller =
+          await _initialize(VideoPlayerController.youtube('abcdefghijk'));
+      await _sendEvent(7, <String, dynamic>{
+        'event': 'queueIndexChanged',
+        'index': 2,
+        'videoId': 'bcdefghijkl',
+        'duration': 60000,
+      });
+      expect(controller.value.queueIndex, 2);
+      expect(controller.value.duration, const Duration(seconds: 60));
+
+      // An unknown duration keeps the previous one.
+      await _sendEvent(7, <String, dynamic>{
+        'event': 'queueIndexChanged',
+        'index': 3,
+        'videoId': 'cdefghijklm',
+        'duration': -9223372036854775807,
+      });
+      expect(controller.value.queueIndex, 3);
+      expect(controller.value.duration, const Duration(seconds: 60));
+      await controller.dispose();
+    });
+  });
+
+  test('bufferingUpdate decodes flat start and end pairs', () async {
+    final VideoPlayerController controller =
+        await _initialize(VideoPlayerController.youtube('abcdefghijk'));
+    await _sendEvent(7, <String, dynamic>{
+      'event': 'bufferingUpdate',
+      'values': Int64List.fromList(<int>[1500, 4000, 6000, 8000]),
+    });
+    final List<DurationRange> buffered = controller.value.buffered;
+    expect(buffered, hasLength(2));
+    expect(buffered[0].start, const Duration(milliseconds: 1500));
+    expect(buffered[0].end, const Duration(milliseconds: 4000));
+    expect(buffered[1].start, const Duration(milliseconds: 6000));
+    expect(buffered[1].end, const Duration(milliseconds: 8000));
+    await controller.dispose();
+  });
+
+  group('batch', () {
+    test('serializes commands and applies successful ones', () async {
+      final VideoPlayerController first =
+          await _initialize(VideoPlayerController.youtube('abcdefghijk'));
+      final VideoPlayerController second =
+          await _initialize(VideoPlayerController.youtube('bcdefghijkl'));
+      batchReply = <dynamic>[
+        <String, dynamic>{'result': null},
+        <String, dynamic>{'error': 'Unknown textureId', 'message': 'Gone'},
+        <String, dynamic>{'result': null},
+        <String, dynamic>{'result': 2000},
+      ];
+
+      final List<dynamic> results = await YoutubePlayer.batch(<BatchCommand>[
+        BatchCommand.play(first),
+        BatchCommand.setLooping(second, true),
+        BatchCommand.setVolume(first, 1.5),
+        BatchCommand.seekTo(second, const Duration(seconds: 2)),
+      ]);
+
+      expect(log.last.method, 'batch');
+      expect(log.last.arguments['commands'], <dynamic>[
+        <String, dynamic>{
+          'method': 'play',
+          'textureId': 7,
+          'args': <String, dynamic>{},
+        },
+        <String, dynamic>{
+          'method': 'setLooping',
+          'textureId': 8,
+          'args': <String, dynamic>{'looping': true},
+        },
+        <String, dynamic>{
+          'method': 'setVolume',
+          'textureId': 7,
+          'args': <String, dynamic>{'volume': 1.0},
+        },
+        <String, dynamic>{
+          'method': 'seekTo',
+          'textureId': 8,
+          'args': <String, dynamic>{'location': 2000},
+        },
+      ]);
+      expect(results, hasLength(4));
+      expect(results[0], isNull);
+      expect(results[1], isInstanceOf<PlatformException>());
+      expect((results[1] as PlatformException).code, 'Unknown textureId');
+      expect(results[3], 2000);
+      expect(first.value.isPlaying, isTrue);
+      expect(first.value.volume, 1.0);
+      // The failed command leaves its controller unchanged.
+      expect(second.value.isLooping, isFalse);
+      await first.dispose();
+      await second.dispose();
+    });
+
+    test('positions', () async {
+      final VideoPlayerController controller =
+          await _initialize(VideoPlayerController.youtube('abcdefghijk'));
+      batchReply = <dynamic>[
+        <String, dynamic>{
+          'result': <int, int>{7: 1500, 8: 300},
+        },
+      ];
+
+      final Map<int, Duration> positions =
+          await YoutubePlayer.positions(<VideoPlayerController>[controller]);
+      expect(log.last.arguments['commands'][0]['method'], 'positions');
+      expect(log.last.arguments['commands'][0]['textureIds'], <int>[7]);
+      expect(positions, <int, Duration>{
+        7: const Duration(milliseconds: 1500),
+        8: const Duration(milliseconds: 300),
+      });
+
+      await YoutubePlayer.positions();
+      expect(log.last.arguments['commands'][0]['textureIds'], isNull);
+      await controller.dispose();
+    });
+  });
+
+  group('network', () {
+    test('parses the legacy data source', () async {
+      final VideoPlayerController controller = VideoPlayerController.network(
+          'abcdefghijksarbagya480psarbagyatrue');
+      expect(controller.videoId, 'abcdefghijk');
+      expect(controller.quality, '480p');
+      expect(controller.isLive, isTrue);
+      expect(controller.dataSourceType, DataSourceType.network);
+
+      await _initialize(controller);
+      final MethodCall create =
+          log.firstWhere((MethodCall call) => call.method == 'create');
+      final Map<dynamic, dynamic> arguments = create.arguments;
+      expect(arguments['videoId'], 'abcdefghijk');
+      expect(arguments['quality'], '480p');
+      expect(arguments['live'], isTrue);
+      await controller.dispose();
+    });
+
+    test('accepts a bare video id', () {
+      final VideoPlayerController controller =
+          VideoPlayerController.network('abcdefghijk');
+      expect(controller.videoId, 'abcdefghijk');
+      expect(controller.quality, isNull);
+      expect(controller.isLive, isFalse);
+    });
+  });
+
   testWidgets('update texture', (WidgetTester tester) async {
     final FakeController controller = FakeController();
     await tester.pumpWidget(VideoPlayer(controller));